@@ -7,7 +7,6 @@ package com.experian.eda.casemanagement.service;
 
 import com.experian.eda.casemanagement.channel.ChannelsUtil;
 import com.experian.eda.casemanagement.channel.bps.config.FilterConfigManager;
-import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BpsGetNotesDataResponse;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BpsHistoryDataResponse;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BundleType;
@@ -18,22 +17,37 @@ import com.experian.eda.casemanagement.generated.model.Activity;
 import com.experian.eda.casemanagement.generated.model.ActivityValue;
 import com.experian.eda.casemanagement.generated.model.CaseviewActivitiesResponse;
 import com.experian.eda.casemanagement.generated.model.CaseviewActivityModel;
-import com.experian.eda.casemanagement.generated.model.CommentWithAttachmentsData;
 import com.experian.eda.casemanagement.service.mapper.activities.ActivitiesMapper;
 import com.experian.saas.service.wrapper.core.rest.RestResponse;
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.CustomLog;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.Comparator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.Objects;
 
 /**
@@ -44,7 +58,7 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class ActivitiesService {
 
-    private final BpsClient bpsClient;
+    private final CoalescingBpsReads coalescingBpsReads;
 
     private final ActivitiesMapper activitiesMapper;
 
@@ -52,10 +66,57 @@ public class ActivitiesService {
 
     private final FilterConfigManager filterConfigManager;
 
-    private static final String NEW = BundleType.NEW.toString();
-    private static final String SEARCH_AND_UPDATE = BundleType.SEARCH_AND_UPDATE.toString();
-    private static final String ROBOT_SEARCH_AND_UPDATE = BundleType.ROBOT_SEARCH_AND_UPDATE.toString();
-    private static final List<String> allowedTypes = Collections.unmodifiableList(Arrays.asList(NEW, SEARCH_AND_UPDATE, ROBOT_SEARCH_AND_UPDATE));
+    private final MeterRegistry meterRegistry;
+
+    private final CaseHistoryStore caseHistoryStore;
+
+    private final RequestSecurityContext requestSecurityContext;
+
+    @Value("${case-management.activities.latency-budget-millis:2000}")
+    private long latencyBudgetMillis;
+
+    /**
+     * The BPS sources the single log activities are built from.
+     */
+    public enum ActivitySource {
+        DOCUMENTS, COMMENTS, HISTORY
+    }
+
+    /**
+     * A page of the single log activities.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ActivitiesPage {
+        private final CaseviewActivitiesResponse activities;
+        /** The cursor to the next page, null when this is the last page. */
+        private final String nextCursor;
+    }
+
+    /**
+     * Single log activities built from the sources that completed within the latency budget.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PartialActivitiesResponse {
+        private final CaseviewActivitiesResponse activities;
+        /** The cursor to the next page, null when this is the last page. */
+        private final String nextCursor;
+        /** The sources that failed or did not complete within the latency budget. */
+        private final Set<ActivitySource> missingSources;
+        /** The time each source that completed before the response was built took, in milliseconds. */
+        private final Map<ActivitySource, Long> sourceDurationMillis;
+    }
+
+    private static final Map<String, BundleType> BUNDLE_TYPES_BY_NAME = Collections.unmodifiableMap(
+            Arrays.stream(BundleType.values()).collect(Collectors.toMap(BundleType::toString, Function.identity())));
+    private static final Set<BundleType> ALLOWED_TYPES = Collections.unmodifiableSet(
+            EnumSet.of(BundleType.NEW, BundleType.SEARCH_AND_UPDATE, BundleType.ROBOT_SEARCH_AND_UPDATE));
+    private static final String ACTIVITIES_HISTORY_KEY_PREFIX = "activities/"; // NOI18N
+    private static final String SOURCE_LATENCY_METRIC_NAME = "e1.ActivitiesService.sourceLatency"; // NOI18N
+    private static final Comparator<OffsetDateTime> NEWEST_DATE_TIME_FIRST = Comparator.reverseOrder();
+    private static final Comparator<CaseviewActivityModel> NEWEST_FIRST =
+            Comparator.comparing(CaseviewActivityModel::getDateTime, NEWEST_DATE_TIME_FIRST);
 
     /**
      * Get single log activities service method
@@ -66,89 +127,339 @@ public class ActivitiesService {
      */
     @Timed("e1.ActivitiesService.getSingleLogActivitiesforCase")
     public CaseviewActivitiesResponse getSingleLogActivitiesforCase(String caseviewId, String updateBpsServiceId) {
+        return getSingleLogActivitiesforCase(caseviewId, updateBpsServiceId, null, null).getActivities();
+    }
+
+    /**
+     * Get a page of the single log activities, newest first. Activities with the same date time are ordered by source,
+     * documents then comments then history, and then by their order within the source.
+     *
+     * @param caseviewId         application id
+     * @param updateBpsServiceId bps service id which perform update operation
+     * @param limit              maximum number of activities to return, null for all of them
+     * @param cursor             the next cursor of the previous page, null to start from the newest
+     * @return the page of activities
+     * @throws com.experian.eda.casemanagement.exception.ResourceBadRequestException if the cursor is malformed
+     */
+    @Timed("e1.ActivitiesService.getSingleLogActivitiesforCase")
+    public ActivitiesPage getSingleLogActivitiesforCase(String caseviewId, String updateBpsServiceId,
+                                                        Integer limit, String cursor) {
+        ActivityCursor after = cursor != null ? ActivityCursor.decode(cursor) : null;
         CompletableFuture<RestResponse<DocumentDataBpsResponse>> bpsGetDocumentsDataResponse
-                = bpsClient.executeGetDocumentAsync(caseviewId, "");
+                = coalescingBpsReads.getDocuments(caseviewId, "");
         CompletableFuture<RestResponse<BpsGetNotesDataResponse>> bpsGetNotesDataResponse
-                = bpsClient.executeGetNotesAsync(caseviewId);
+                = coalescingBpsReads.getNotes(caseviewId);
         CompletableFuture<RestResponse<BpsHistoryDataResponse>> bpsHistoryDataResponse
-                = bpsClient.executeGetHistoryAsync(caseviewId);
+                = coalescingBpsReads.getHistory(caseviewId);
 
-        List<CommentWithAttachmentsData> comments
-                = commentActivitiesService.convertToComment(ChannelsUtil.getCompletedResultFuture(bpsGetNotesDataResponse).body());
+        return toActivitiesResponse(caseviewId,
+                ChannelsUtil.getCompletedResultFuture(bpsGetDocumentsDataResponse).body(),
+                ChannelsUtil.getCompletedResultFuture(bpsGetNotesDataResponse).body(),
+                ChannelsUtil.getCompletedResultFuture(bpsHistoryDataResponse).body(),
+                updateBpsServiceId, limit, after);
+    }
+
+    /**
+     * Get a page of the single log activities, newest first, with the sources that completed within the latency
+     * budget. Sources that fail or do not complete in time are left out of the response and reported as missing.
+     *
+     * @param caseviewId         application id
+     * @param updateBpsServiceId bps service id which perform update operation
+     * @param limit              maximum number of activities to return, null for all of them
+     * @param cursor             the next cursor of the previous page, null to start from the newest
+     * @return the activities together with the missing sources and the time each completed source took
+     * @throws com.experian.eda.casemanagement.exception.ResourceBadRequestException if the cursor is malformed
+     */
+    @Timed("e1.ActivitiesService.getSingleLogActivitiesWithinBudget")
+    public PartialActivitiesResponse getSingleLogActivitiesWithinBudget(String caseviewId, String updateBpsServiceId,
+                                                                       Integer limit, String cursor) {
+        ActivityCursor after = cursor != null ? ActivityCursor.decode(cursor) : null;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyBudgetMillis);
+        Map<ActivitySource, Long> sourceDurationMillis = new ConcurrentHashMap<>();
+        CompletableFuture<RestResponse<DocumentDataBpsResponse>> bpsGetDocumentsDataResponse
+                = timed(ActivitySource.DOCUMENTS, sourceDurationMillis, () -> coalescingBpsReads.getDocuments(caseviewId, ""));
+        CompletableFuture<RestResponse<BpsGetNotesDataResponse>> bpsGetNotesDataResponse
+                = timed(ActivitySource.COMMENTS, sourceDurationMillis, () -> coalescingBpsReads.getNotes(caseviewId));
+        CompletableFuture<RestResponse<BpsHistoryDataResponse>> bpsHistoryDataResponse
+                = timed(ActivitySource.HISTORY, sourceDurationMillis, () -> coalescingBpsReads.getHistory(caseviewId));
+
+        Set<ActivitySource> missingSources = EnumSet.noneOf(ActivitySource.class);
+        DocumentDataBpsResponse documents = awaitWithinBudget(ActivitySource.DOCUMENTS, bpsGetDocumentsDataResponse, deadlineNanos, missingSources);
+        BpsGetNotesDataResponse notes = awaitWithinBudget(ActivitySource.COMMENTS, bpsGetNotesDataResponse, deadlineNanos, missingSources);
+        BpsHistoryDataResponse history = awaitWithinBudget(ActivitySource.HISTORY, bpsHistoryDataResponse, deadlineNanos, missingSources);
+
+        ActivitiesPage page = toActivitiesResponse(caseviewId, documents, notes, history, updateBpsServiceId, limit, after);
+        Map<ActivitySource, Long> completedSourceDurationMillis = new EnumMap<>(ActivitySource.class);
+        completedSourceDurationMillis.putAll(sourceDurationMillis);
+        return new PartialActivitiesResponse(page.getActivities(), page.getNextCursor(), missingSources, completedSourceDurationMillis);
+    }
 
-        List<Activity> activities = convertToActivity(ChannelsUtil.getCompletedResultFuture(bpsHistoryDataResponse).body().getHistory(),
-                updateBpsServiceId);
+    private ActivitiesPage toActivitiesResponse(String caseviewId,
+                                                DocumentDataBpsResponse documents,
+                                                BpsGetNotesDataResponse notes,
+                                                BpsHistoryDataResponse history,
+                                                String updateBpsServiceId,
+                                                Integer limit,
+                                                ActivityCursor after) {
+        List<CaseviewActivityModel> caseViewListForDocument = documents == null ? null
+                : activitiesMapper.documentToCaseViewActivityModels(documents.getData());
+        List<CaseviewActivityModel> caseViewListForComment = notes == null ? null
+                : activitiesMapper.commentToCaseViewActivityModels(commentActivitiesService.convertToComment(notes));
+        // The converted history is reused as long as BPS returns the same history to the same caller and the service ids
+        // it holds are still registered, the activities themselves are built again for every request
+        List<CaseviewActivityModel> caseViewListForActivity = history == null ? null
+                : activitiesMapper.historyToCaseviewActivityModels(caseHistoryStore.getOrConvert(
+                String.join("/", ACTIVITIES_HISTORY_KEY_PREFIX + requestSecurityContext.getCallerKey(), caseviewId, updateBpsServiceId), // NOI18N
+                history.getHistory(), entries -> convertHistory(entries, updateBpsServiceId), this::isCurrent).toActivities());
 
+        // In the order of ActivitySource, which breaks the ties between sources
         List<CaseviewActivityModel> combinedList = new ArrayList<>();
+        ActivityCursor nextCursor = mergeNewestFirst(
+                Arrays.asList(caseViewListForDocument, caseViewListForComment, caseViewListForActivity),
+                limit != null ? limit : Integer.MAX_VALUE, after, combinedList);
+        return new ActivitiesPage(new CaseviewActivitiesResponse(combinedList), nextCursor != null ? nextCursor.encode() : null);
+    }
 
-        List<CaseviewActivityModel> caseViewListForDocument = activitiesMapper.documentToCaseViewActivityModels(ChannelsUtil.getCompletedResultFuture(bpsGetDocumentsDataResponse).body().getData());
-        List<CaseviewActivityModel> caseViewListForComment = activitiesMapper.commentToCaseViewActivityModels(comments);
-        List<CaseviewActivityModel> caseViewListForActivity = activitiesMapper.historyToCaseviewActivityModels(activities);
+    private <T> CompletableFuture<T> timed(ActivitySource source, Map<ActivitySource, Long> sourceDurationMillis,
+                                           Supplier<CompletableFuture<T>> call) {
+        long startNanos = System.nanoTime();
+        return call.get().whenComplete((result, ex) -> {
+            long durationNanos = System.nanoTime() - startNanos;
+            sourceDurationMillis.put(source, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            meterRegistry.timer(SOURCE_LATENCY_METRIC_NAME, "source", source.name(), // NOI18N
+                    "outcome", ex == null ? "success" : "failure") // NOI18N
+                    .record(durationNanos, TimeUnit.NANOSECONDS);
+        });
+    }
 
-        if(!CollectionUtils.isEmpty(caseViewListForDocument)) {
-            combinedList.addAll(caseViewListForDocument);
+    private static <T> T awaitWithinBudget(ActivitySource source, CompletableFuture<RestResponse<T>> future,
+                                           long deadlineNanos, Set<ActivitySource> missingSources) {
+        try {
+            return future.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS).body();
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Activity source {} did not complete within the latency budget", source); // NOI18N
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.warn("Activity source {} failed due to {}", source, ex.getCause().getLocalizedMessage()); // NOI18N
         }
-        if(!CollectionUtils.isEmpty(caseViewListForComment)) {
-            combinedList.addAll(caseViewListForComment);
+        missingSources.add(source);
+        return null;
+    }
+
+    /**
+     * Merges the sources, each already ordered by date time as returned by BPS, into one list ordered newest first.
+     * A source that is not ordered newest first is sorted on its own before the merge. Activities with the same date
+     * time are ordered by source and then by their order within the source.
+     *
+     * @param sources the activity models of each source in the order of {@link ActivitySource}, a source can be null
+     * @param limit   maximum number of activity models to return
+     * @param after   only return activity models after this cursor, can be null
+     * @param merged  the list the merged activity models are added to
+     * @return the cursor to the activity models after the merged ones, null when there are none
+     */
+    private static ActivityCursor mergeNewestFirst(List<List<CaseviewActivityModel>> sources, int limit,
+                                                   ActivityCursor after, List<CaseviewActivityModel> merged) {
+        ActivitySource[] sourceTypes = ActivitySource.values();
+        List<List<CaseviewActivityModel>> newestFirstSources = new ArrayList<>(sources.size());
+        for (List<CaseviewActivityModel> source : sources) {
+            newestFirstSources.add(CollectionUtils.isEmpty(source) ? Collections.emptyList() : toNewestFirst(source));
         }
-        if(!CollectionUtils.isEmpty(caseViewListForActivity)) {
-            combinedList.addAll(caseViewListForActivity);
+        int[] positions = new int[newestFirstSources.size()];
+        if (after != null) {
+            for (int i = 0; i < positions.length; i++) {
+                List<CaseviewActivityModel> source = newestFirstSources.get(i);
+                while (positions[i] < source.size()
+                        && !isAfter(source, positions[i], sourceTypes[i], after)) {
+                    positions[i]++;
+                }
+            }
         }
-        combinedList.sort(Comparator.comparing(CaseviewActivityModel::getDateTime).reversed());
 
-        return new CaseviewActivitiesResponse(combinedList);
+        int lastSource = -1;
+        while (merged.size() < limit) {
+            int newest = -1;
+            for (int i = 0; i < positions.length; i++) {
+                List<CaseviewActivityModel> source = newestFirstSources.get(i);
+                // Strictly newer, so the first source wins a tie
+                if (positions[i] < source.size() && (newest < 0 || NEWEST_FIRST.compare(
+                        source.get(positions[i]), newestFirstSources.get(newest).get(positions[newest])) < 0)) {
+                    newest = i;
+                }
+            }
+            if (newest < 0) {
+                return null;
+            }
+            merged.add(newestFirstSources.get(newest).get(positions[newest]++));
+            lastSource = newest;
+        }
+        for (int i = 0; i < positions.length && lastSource >= 0; i++) {
+            if (positions[i] < newestFirstSources.get(i).size()) {
+                List<CaseviewActivityModel> source = newestFirstSources.get(lastSource);
+                int last = positions[lastSource] - 1;
+                return ActivityCursor.of(source.get(last).getDateTime(), sourceTypes[lastSource], tieIndex(source, last));
+            }
+        }
+        return null;
     }
 
-    private List<Activity> convertToActivity(List<HistoryDataDto> history, String updateBpsServiceId) {
-        List<Activity> activities;
-        if (history != null && !history.isEmpty()) {
-            List<HistoryDataDto> historySanitised = HistoryDataUtil.sanitiseHistory(history);
-            activities = historySanitised.stream()
-                    // If the BPS audit entry is "SEARCH" or "SEARCHPAGE", we are not interested because our audits
-                    // should be made by "NEW", "SEARCH AND UPDATE" and "ROBOT SEARCH AND UPDATE" services only.
-                    .filter(hd -> allowedTypes.contains(hd.getType()))
-                    .map(hdd -> createActivity(hdd, updateBpsServiceId))
-                    .collect(Collectors.toList());
-        } else {
-            activities = Collections.emptyList();
+    private static boolean isAfter(List<CaseviewActivityModel> source, int position, ActivitySource sourceType,
+                                   ActivityCursor cursor) {
+        int order = NEWEST_DATE_TIME_FIRST.compare(source.get(position).getDateTime(), cursor.getDateTime());
+        if (order != 0) {
+            return order > 0;
+        }
+        int sourceOrder = sourceType.compareTo(cursor.getSource());
+        return sourceOrder != 0 ? sourceOrder > 0 : tieIndex(source, position) > cursor.getTieIndex();
+    }
+
+    /**
+     * @return the number of activity models before the given one with the same date time
+     */
+    private static int tieIndex(List<CaseviewActivityModel> source, int position) {
+        OffsetDateTime dateTime = source.get(position).getDateTime();
+        int tieIndex = 0;
+        while (position - tieIndex > 0 && source.get(position - tieIndex - 1).getDateTime().equals(dateTime)) {
+            tieIndex++;
+        }
+        return tieIndex;
+    }
+
+    private static List<CaseviewActivityModel> toNewestFirst(List<CaseviewActivityModel> source) {
+        for (int i = 1; i < source.size(); i++) {
+            if (NEWEST_FIRST.compare(source.get(i - 1), source.get(i)) > 0) {
+                LOGGER.debug("Activity source of {} entries is not ordered newest first, sorting it", source.size()); // NOI18N
+                // List.sort is stable, activity models with the same date time keep their order within the source
+                List<CaseviewActivityModel> sorted = new ArrayList<>(source);
+                sorted.sort(NEWEST_FIRST);
+                return sorted;
+            }
+        }
+        return source;
+    }
+
+    private ConvertedHistory convertHistory(List<HistoryDataDto> history, String updateBpsServiceId) {
+        Map<String, Boolean> registeredServiceIds = new HashMap<>();
+        List<ConvertedHistoryEntry> entries = streamConvertedHistory(history, updateBpsServiceId, registeredServiceIds)
+                .collect(Collectors.toList());
+        return new ConvertedHistory(Collections.unmodifiableList(entries), Collections.unmodifiableMap(registeredServiceIds));
+    }
+
+    private boolean isCurrent(ConvertedHistory converted) {
+        for (Map.Entry<String, Boolean> registered : converted.registeredServiceIds.entrySet()) {
+            if (filterConfigManager.isRegisteredServiceId(registered.getKey()) != registered.getValue()) {
+                return false;
+            }
         }
-        return activities;
+        return true;
     }
 
-    private Activity createActivity(HistoryDataDto from, String updateBpsServiceId) {
-        return new Activity(from.getUserId(),
-                from.getCompleted(),
-                convertActivityType(from, updateBpsServiceId),
-                convertCharacteristics(from));
+    /**
+     * Lazily converts the BPS history to activities, the entries are sanitised, filtered and converted as the stream
+     * is consumed.
+     *
+     * @param history            the BPS history of the case, can be null
+     * @param updateBpsServiceId bps service id which perform update operation
+     * @return the stream of activities
+     */
+    protected Stream<Activity> streamActivities(List<HistoryDataDto> history, String updateBpsServiceId) {
+        return streamConvertedHistory(history, updateBpsServiceId, new HashMap<>()).map(ConvertedHistoryEntry::toActivity);
     }
 
-    private Activity.TypeEnum convertActivityType(HistoryDataDto from, String updateBpsServiceId) {
-        if (!from.getType().equals(NEW) && !filterConfigManager.isRegisteredServiceId(from.getServiceId())) {
+    private Stream<ConvertedHistoryEntry> streamConvertedHistory(List<HistoryDataDto> history, String updateBpsServiceId,
+                                                                 Map<String, Boolean> registeredServiceIds) {
+        if (history == null || history.isEmpty()) {
+            return Stream.empty();
+        }
+        // Registered service ids are looked up once per distinct service id of this history
+        return HistoryDataUtil.sanitiseHistory(history).stream()
+                .map(hd -> {
+                    // If the BPS audit entry is "SEARCH" or "SEARCHPAGE", we are not interested because our audits
+                    // should be made by "NEW", "SEARCH AND UPDATE" and "ROBOT SEARCH AND UPDATE" services only.
+                    BundleType type = BUNDLE_TYPES_BY_NAME.get(hd.getType());
+                    return type != null && ALLOWED_TYPES.contains(type)
+                            ? new ConvertedHistoryEntry(hd, convertActivityType(hd, type, updateBpsServiceId, registeredServiceIds),
+                            convertCharacteristics(hd))
+                            : null;
+                })
+                .filter(Objects::nonNull);
+    }
+
+    private Activity.TypeEnum convertActivityType(HistoryDataDto from, BundleType type, String updateBpsServiceId,
+                                                  Map<String, Boolean> registeredServiceIds) {
+        if (type == BundleType.NEW) {
+            return Activity.TypeEnum.CREATE;
+        }
+        if (!registeredServiceIds.computeIfAbsent(from.getServiceId(), filterConfigManager::isRegisteredServiceId)) {
             return Activity.TypeEnum.EXTERNAL_ACTIVITY;
         }
-        Activity.TypeEnum activityType;
-        if (from.getType().equals(NEW)) {
-            activityType = Activity.TypeEnum.CREATE;
-        } else {
-            if (updateBpsServiceId.equals(from.getServiceId())) {
-                activityType = Activity.TypeEnum.UPDATE;
-            } else {
-                activityType = Activity.TypeEnum.READ;
+        return updateBpsServiceId.equals(from.getServiceId()) ? Activity.TypeEnum.UPDATE : Activity.TypeEnum.READ;
+    }
+
+    private static List<CharacteristicChange> convertCharacteristics(HistoryDataDto from) {
+        List<CharacteristicChange> changes = new ArrayList<>(from.getCharacteristics().size());
+        from.getCharacteristics().forEach((key, characteristic) -> {
+            Object currentValue = characteristic.getCurrentValue();
+            Object previousValue = characteristic.getPreviousValue();
+            if (!Objects.equals(currentValue, previousValue)) {
+                String dataType = characteristic.getDataType();
+                changes.add(new CharacteristicChange(key,
+                        ServicesUtil.toStrongTypedCharacteristics(currentValue, dataType),
+                        ServicesUtil.toStrongTypedCharacteristics(previousValue, dataType)));
             }
+        });
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * The history of a case converted for the activities, kept in the {@link CaseHistoryStore} and shared between
+     * requests. It is never handed out, the activities are built from it for each request.
+     */
+    private static final class ConvertedHistory {
+        private final List<ConvertedHistoryEntry> entries;
+        /** Whether each service id of the history was registered when it was converted. */
+        private final Map<String, Boolean> registeredServiceIds;
+
+        private ConvertedHistory(List<ConvertedHistoryEntry> entries, Map<String, Boolean> registeredServiceIds) {
+            this.entries = entries;
+            this.registeredServiceIds = registeredServiceIds;
+        }
+
+        private List<Activity> toActivities() {
+            List<Activity> activities = new ArrayList<>(entries.size());
+            entries.forEach(entry -> activities.add(entry.toActivity()));
+            return activities;
         }
-        return activityType;
     }
 
-    private static List<ActivityValue> convertCharacteristics(HistoryDataDto from) {
-        return from.getCharacteristics()
-                .entrySet()
-                .stream()
-                .filter(entry -> !Objects.equals(entry.getValue().getCurrentValue(), entry.getValue().getPreviousValue()))
-                .map(entry -> new ActivityValue(entry.getKey(),
-                        ServicesUtil.toStrongTypedCharacteristics(entry.getValue().getCurrentValue(), entry.getValue().getDataType()),
-                        ServicesUtil.toStrongTypedCharacteristics(entry.getValue().getPreviousValue(), entry.getValue().getDataType()))
-                )
-                .collect(Collectors.toList());
+    private static final class ConvertedHistoryEntry {
+        private final HistoryDataDto from;
+        private final Activity.TypeEnum type;
+        private final List<CharacteristicChange> changes;
+
+        private ConvertedHistoryEntry(HistoryDataDto from, Activity.TypeEnum type, List<CharacteristicChange> changes) {
+            this.from = from;
+            this.type = type;
+            this.changes = changes;
+        }
+
+        private Activity toActivity() {
+            List<ActivityValue> activityValues = new ArrayList<>(changes.size());
+            changes.forEach(change -> activityValues.add(
+                    new ActivityValue(change.key, change.currentValue, change.previousValue)));
+            return new Activity(from.getUserId(), from.getCompleted(), type, activityValues);
+        }
     }
 
+    private static final class CharacteristicChange {
+        private final String key;
+        private final Object currentValue;
+        private final Object previousValue;
+
+        private CharacteristicChange(String key, Object currentValue, Object previousValue) {
+            this.key = key;
+            this.currentValue = currentValue;
+            this.previousValue = previousValue;
+        }
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.config.FilterConfigManager;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsGetNotesDataResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsHistoryDataResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BundleType;
+import com.experian.eda.casemanagement.channel.bps.v0.model.HistoryDataDto;
+import com.experian.eda.casemanagement.channel.bps.v0.model.document.DocumentDataBpsResponse;
+import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
+import com.experian.eda.casemanagement.generated.model.Activity;
+import com.experian.eda.casemanagement.generated.model.CaseviewActivityModel;
+import com.experian.eda.casemanagement.service.mapper.activities.ActivitiesMapper;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ActivitiesServiceTest {
+    private static final String CASEVIEW_ID = "appId"; // NOI18N
+    private static final String SERVICE_ID = "service"; // NOI18N
+    private static final OffsetDateTime T1 = OffsetDateTime.of(2022, 1, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime T2 = T1.plusMinutes(1);
+    private static final OffsetDateTime T3 = T1.plusMinutes(2);
+
+    @Mock
+    private CoalescingBpsReads coalescingBpsReads;
+    @Mock
+    private ActivitiesMapper activitiesMapper;
+    @Mock
+    private CommentActivitiesService commentActivitiesService;
+    @Mock
+    private FilterConfigManager filterConfigManager;
+    @Mock
+    private CaseHistoryStore caseHistoryStore;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+    @Captor
+    private ArgumentCaptor<List<Activity>> activitiesCaptor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ActivitiesService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ActivitiesService(coalescingBpsReads, activitiesMapper, commentActivitiesService,
+                filterConfigManager, meterRegistry, caseHistoryStore, requestSecurityContext);
+        ReflectionTestUtils.setField(service, "latencyBudgetMillis", 2000L); // NOI18N
+    }
+
+    @Test
+    void pagesThroughActivitiesWithTheSameDateTimeWithoutSkippingOrRepeatingAny() {
+        CaseviewActivityModel d1 = activity(T3);
+        CaseviewActivityModel d2 = activity(T2);
+        CaseviewActivityModel d3 = activity(T2);
+        CaseviewActivityModel c1 = activity(T1);
+        CaseviewActivityModel c2 = activity(T2);
+        CaseviewActivityModel c3 = activity(T2);
+        // Documents newest first, comments oldest first
+        givenSources(Arrays.asList(d1, d2, d3), Arrays.asList(c1, c2, c3));
+
+        List<CaseviewActivityModel> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ActivitiesService.PartialActivitiesResponse page = service.getSingleLogActivitiesWithinBudget(CASEVIEW_ID, SERVICE_ID, 2, cursor);
+            all.addAll(page.getActivities().getActivities());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Ties are ordered by source, then keep their order within the source
+        assertEquals(Arrays.asList(d1, d2, d3, c2, c3, c1), all);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void theLastPageHasNoCursor() {
+        givenSources(Arrays.asList(activity(T2), activity(T1)), null);
+        ActivitiesService.PartialActivitiesResponse page = service.getSingleLogActivitiesWithinBudget(CASEVIEW_ID, SERVICE_ID, 2, null);
+        assertEquals(2, page.getActivities().getActivities().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsAMalformedCursor() {
+        assertThrows(ResourceBadRequestException.class,
+                () -> service.getSingleLogActivitiesWithinBudget(CASEVIEW_ID, SERVICE_ID, 2, "not-a-cursor")); // NOI18N
+    }
+
+    @Test
+    void aCursorRoundTripsItsDateTimeSourceAndTieIndex() {
+        ActivityCursor cursor = ActivityCursor.decode(ActivityCursor.of(T2, ActivitiesService.ActivitySource.COMMENTS, 3).encode());
+        assertEquals(T2, cursor.getDateTime());
+        assertEquals(ActivitiesService.ActivitySource.COMMENTS, cursor.getSource());
+        assertEquals(3, cursor.getTieIndex());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void leavesOutTheSourcesThatFailOrMissTheLatencyBudget() {
+        ReflectionTestUtils.setField(service, "latencyBudgetMillis", 50L); // NOI18N
+        CaseviewActivityModel document = activity(T1);
+        RestResponse<DocumentDataBpsResponse> documentsResponse = mock(RestResponse.class);
+        when(documentsResponse.body()).thenReturn(mock(DocumentDataBpsResponse.class));
+        when(coalescingBpsReads.getDocuments(CASEVIEW_ID, "")).thenReturn(CompletableFuture.completedFuture(documentsResponse));
+        when(activitiesMapper.documentToCaseViewActivityModels(any())).thenReturn(Arrays.asList(document));
+        CompletableFuture<RestResponse<BpsGetNotesDataResponse>> failedNotes = new CompletableFuture<>();
+        failedNotes.completeExceptionally(new IllegalStateException("BPS unavailable")); // NOI18N
+        when(coalescingBpsReads.getNotes(CASEVIEW_ID)).thenReturn(failedNotes);
+        // Never completes
+        when(coalescingBpsReads.getHistory(CASEVIEW_ID)).thenReturn(new CompletableFuture<>());
+
+        ActivitiesService.PartialActivitiesResponse response = service.getSingleLogActivitiesWithinBudget(CASEVIEW_ID, SERVICE_ID, null, null);
+
+        assertEquals(Arrays.asList(document), response.getActivities().getActivities());
+        assertEquals(EnumSet.of(ActivitiesService.ActivitySource.COMMENTS, ActivitiesService.ActivitySource.HISTORY),
+                response.getMissingSources());
+        assertEquals(EnumSet.of(ActivitiesService.ActivitySource.DOCUMENTS, ActivitiesService.ActivitySource.COMMENTS),
+                response.getSourceDurationMillis().keySet());
+        assertEquals(1L, meterRegistry.get("e1.ActivitiesService.sourceLatency") // NOI18N
+                .tags("source", "COMMENTS", "outcome", "failure").timer().count()); // NOI18N
+    }
+
+    @Test
+    void convertsHistoryAskingOnceForEachServiceIdWhetherItIsRegistered() {
+        when(filterConfigManager.isRegisteredServiceId("update")).thenReturn(true); // NOI18N
+        List<HistoryDataDto> history = Arrays.asList(
+                history(BundleType.NEW.toString(), "update"), // NOI18N
+                history("SEARCH", "update"), // NOI18N
+                history(BundleType.SEARCH_AND_UPDATE.toString(), "update"), // NOI18N
+                history(BundleType.SEARCH_AND_UPDATE.toString(), "update")); // NOI18N
+
+        List<Activity.TypeEnum> types = service.streamActivities(history, "update") // NOI18N
+                .map(Activity::getType)
+                .collect(Collectors.toList());
+
+        // Search entries are not activities, the service id is looked up once
+        assertEquals(Arrays.asList(Activity.TypeEnum.CREATE, Activity.TypeEnum.UPDATE, Activity.TypeEnum.UPDATE), types);
+        verify(filterConfigManager, times(1)).isRegisteredServiceId("update"); // NOI18N
+    }
+
+    @Test
+    void buildsNewActivitiesFromTheStoredHistoryForEachRequest() {
+        CaseHistoryStore store = new CaseHistoryStore(meterRegistry);
+        ReflectionTestUtils.setField(store, "maxSize", 10L); // NOI18N
+        store.init();
+        service = new ActivitiesService(coalescingBpsReads, activitiesMapper, commentActivitiesService,
+                filterConfigManager, meterRegistry, store, requestSecurityContext);
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|111"); // NOI18N
+        givenHistory(Arrays.asList(history(BundleType.SEARCH_AND_UPDATE.toString(), SERVICE_ID)));
+        when(filterConfigManager.isRegisteredServiceId(SERVICE_ID)).thenReturn(true);
+
+        service.getSingleLogActivitiesforCase(CASEVIEW_ID, SERVICE_ID);
+        service.getSingleLogActivitiesforCase(CASEVIEW_ID, SERVICE_ID);
+        // The service is no longer registered, the stored conversion no longer holds
+        when(filterConfigManager.isRegisteredServiceId(SERVICE_ID)).thenReturn(false);
+        service.getSingleLogActivitiesforCase(CASEVIEW_ID, SERVICE_ID);
+
+        verify(activitiesMapper, times(3)).historyToCaseviewActivityModels(activitiesCaptor.capture());
+        List<List<Activity>> mapped = activitiesCaptor.getAllValues();
+        assertNotSame(mapped.get(0).get(0), mapped.get(1).get(0));
+        assertEquals(Activity.TypeEnum.UPDATE, mapped.get(1).get(0).getType());
+        assertEquals(Activity.TypeEnum.EXTERNAL_ACTIVITY, mapped.get(2).get(0).getType());
+    }
+
+    @Test
+    void theStoredHistoryIsScopedToTheUser() {
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|111"); // NOI18N
+        givenHistory(Collections.emptyList());
+        when(caseHistoryStore.getOrConvert(eq("activities/user1/" + CASEVIEW_ID + '/' + SERVICE_ID), any(), any(), any())) // NOI18N
+                .thenAnswer(invocation -> invocation.<Function<List<HistoryDataDto>, Object>>getArgument(2)
+                        .apply(invocation.getArgument(1)));
+
+        service.getSingleLogActivitiesforCase(CASEVIEW_ID, SERVICE_ID);
+
+        verify(activitiesMapper).historyToCaseviewActivityModels(Collections.emptyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenHistory(List<HistoryDataDto> entries) {
+        RestResponse<DocumentDataBpsResponse> documentsResponse = mock(RestResponse.class);
+        when(coalescingBpsReads.getDocuments(CASEVIEW_ID, "")).thenReturn(CompletableFuture.completedFuture(documentsResponse));
+        RestResponse<BpsGetNotesDataResponse> notesResponse = mock(RestResponse.class);
+        when(coalescingBpsReads.getNotes(CASEVIEW_ID)).thenReturn(CompletableFuture.completedFuture(notesResponse));
+        BpsHistoryDataResponse history = mock(BpsHistoryDataResponse.class);
+        lenient().when(history.getHistory()).thenReturn(entries);
+        RestResponse<BpsHistoryDataResponse> historyResponse = mock(RestResponse.class);
+        when(historyResponse.body()).thenReturn(history);
+        when(coalescingBpsReads.getHistory(CASEVIEW_ID)).thenReturn(CompletableFuture.completedFuture(historyResponse));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenSources(List<CaseviewActivityModel> documents, List<CaseviewActivityModel> comments) {
+        RestResponse<DocumentDataBpsResponse> documentsResponse = mock(RestResponse.class);
+        when(documentsResponse.body()).thenReturn(mock(DocumentDataBpsResponse.class));
+        when(coalescingBpsReads.getDocuments(CASEVIEW_ID, "")).thenReturn(CompletableFuture.completedFuture(documentsResponse));
+        when(activitiesMapper.documentToCaseViewActivityModels(any())).thenReturn(documents);
+
+        RestResponse<BpsGetNotesDataResponse> notesResponse = mock(RestResponse.class);
+        when(notesResponse.body()).thenReturn(mock(BpsGetNotesDataResponse.class));
+        when(coalescingBpsReads.getNotes(CASEVIEW_ID)).thenReturn(CompletableFuture.completedFuture(notesResponse));
+        when(activitiesMapper.commentToCaseViewActivityModels(any())).thenReturn(comments);
+
+        // No history
+        RestResponse<BpsHistoryDataResponse> historyResponse = mock(RestResponse.class);
+        when(coalescingBpsReads.getHistory(CASEVIEW_ID)).thenReturn(CompletableFuture.completedFuture(historyResponse));
+    }
+
+    private static HistoryDataDto history(String type, String serviceId) {
+        HistoryDataDto entry = mock(HistoryDataDto.class);
+        lenient().when(entry.getType()).thenReturn(type);
+        lenient().when(entry.getServiceId()).thenReturn(serviceId);
+        return entry;
+    }
+
+    private static CaseviewActivityModel activity(OffsetDateTime dateTime) {
+        CaseviewActivityModel activity = mock(CaseviewActivityModel.class);
+        lenient().when(activity.getDateTime()).thenReturn(dateTime);
+        return activity;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.ChannelsUtil;
+import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * An opaque cursor to the next page of the single log activities of a case. Activities with the same date time are
+ * ordered by source and then by their order within the source, so the cursor carries all three: the date time of the
+ * last activity sent, its source, and how many activities of that source with the same date time came before it.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class ActivityCursor {
+    private static final String VERSION = "1"; // NOI18N
+    private static final String SEPARATOR = ":"; // NOI18N
+    private static final String CURSOR_FIELD_NAME = "cursor"; // NOI18N
+
+    private final OffsetDateTime dateTime;
+    private final ActivitiesService.ActivitySource source;
+    /** The number of activities of the source with the same date time before the last activity sent. */
+    private final int tieIndex;
+
+    /**
+     * @param dateTime the date time of the last activity sent
+     * @param source   the source of the last activity sent
+     * @param tieIndex the number of activities of the source with the same date time before it
+     * @return the cursor
+     */
+    static ActivityCursor of(OffsetDateTime dateTime, ActivitiesService.ActivitySource source, int tieIndex) {
+        return new ActivityCursor(dateTime, source, tieIndex);
+    }
+
+    /**
+     * @param encoded the cursor sent by the client
+     * @return the decoded cursor
+     * @throws ResourceBadRequestException if the cursor is malformed
+     */
+    static ActivityCursor decode(String encoded) {
+        try {
+            // The date time comes last, it contains the separator
+            String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+            if (parts.length == 4 && VERSION.equals(parts[0])) {
+                int tieIndex = Integer.parseInt(parts[2]);
+                if (tieIndex >= 0) {
+                    return new ActivityCursor(OffsetDateTime.parse(parts[3]),
+                            ActivitiesService.ActivitySource.valueOf(parts[1]), tieIndex);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            // reported below, NumberFormatException is an IllegalArgumentException
+        }
+        throw new ResourceBadRequestException(ChannelsUtil.EXPECTED_PARAM_MISMATCH, CURSOR_FIELD_NAME, ChannelsUtil.EXPECTED_PARAM_MISMATCH);
+    }
+
+    /**
+     * @return the cursor to send to the client
+     */
+    String encode() {
+        String value = String.join(SEPARATOR, VERSION, source.name(), Integer.toString(tieIndex), dateTime.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
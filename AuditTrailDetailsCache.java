@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.generated.model.AuditTrailDetailsResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the mapped audit trail details, keyed by caller and history id. A history record never changes once
+ * written, but BPS decides which records a user may read, so entries expire after a time to live and a revoked access
+ * applies within that time. The cache is bounded by the serialized size of the details, which vary a lot between
+ * records.
+ * <p>
+ * The details are kept serialized to JSON, and each hit deserializes its own copy, so callers never share a mutable
+ * response. Values of properties declared as {@code Object}, such as characteristic values, are written with their
+ * type, so a {@code BigDecimal} or a date comes back as the same type rather than as the nearest JSON type.
+ */
+@CustomLog
+@Component
+@RequiredArgsConstructor
+public class AuditTrailDetailsCache {
+    private static final String CACHE_NAME = "AuditTrailDetailsCache"; // NOI18N
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.audit-trail-details-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${case-management.audit-trail-details-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${case-management.audit-trail-details-cache.ttl-millis:600000}")
+    private long ttlMillis;
+
+    /** The details as JSON bytes. */
+    private LocalCache<String, byte[]> cache;
+    /** The application object mapper, writing values of properties declared as Object with their type. */
+    private ObjectMapper typedObjectMapper;
+
+    @PostConstruct
+    void init() {
+        cache = new LocalCache<>(CACHE_NAME, maxBytes, Duration.ofMillis(ttlMillis), json -> json.length, meterRegistry);
+        typedObjectMapper = typedCopy(objectMapper);
+    }
+
+    /**
+     * @param objectMapper the object mapper to copy
+     * @return a copy of the object mapper that writes values of properties declared as Object with their type
+     */
+    static ObjectMapper typedCopy(ObjectMapper objectMapper) {
+        // Only the cache reads what it wrote, the types are still limited to those characteristic values come as.
+        // Strings, booleans, integers and doubles are written without a type.
+        return objectMapper.copy().activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType(BigDecimal.class)
+                        .allowIfSubType(BigInteger.class)
+                        .allowIfSubType(Long.class)
+                        .allowIfSubType("java.time.") // NOI18N
+                        .allowIfSubType(ArrayList.class)
+                        .allowIfSubType(LinkedHashMap.class)
+                        .build(),
+                ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT);
+    }
+
+    /**
+     * Get the details of a history record, loading them on a miss.
+     *
+     * @param callerKey the key of the caller the details are read for, see {@link RequestSecurityContext#getCallerKey()}
+     * @param historyId the history id
+     * @param loader    loads and maps the details from BPS
+     * @return the audit trail details, a copy of its own for each caller
+     */
+    public AuditTrailDetailsResponse get(String callerKey, String historyId, Supplier<AuditTrailDetailsResponse> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String key = callerKey + '/' + historyId;
+        byte[] json = cache.getIfPresent(key);
+        if (json != null) {
+            AuditTrailDetailsResponse details = read(key, json);
+            if (details != null) {
+                return details;
+            }
+        }
+        AuditTrailDetailsResponse details = loader.get();
+        if (details != null) {
+            write(key, details);
+        }
+        return details;
+    }
+
+    private AuditTrailDetailsResponse read(String key, byte[] json) {
+        try {
+            return typedObjectMapper.readValue(json, AuditTrailDetailsResponse.class);
+        } catch (IOException ex) {
+            LOGGER.warn("Discarding unreadable audit trail details {} due to {}", key, ex.getLocalizedMessage()); // NOI18N
+            cache.invalidate(key);
+            return null;
+        }
+    }
+
+    private void write(String key, AuditTrailDetailsResponse details) {
+        try {
+            cache.put(key, typedObjectMapper.writeValueAsBytes(details));
+        } catch (JsonProcessingException ex) {
+            LOGGER.warn("Unable to cache audit trail details {} due to {}", key, ex.getLocalizedMessage()); // NOI18N
+        }
+    }
+}
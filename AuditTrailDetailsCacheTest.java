@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.generated.model.AuditTrailDetailsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuditTrailDetailsCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private AuditTrailDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AuditTrailDetailsCache(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true); // NOI18N
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024L); // NOI18N
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L); // NOI18N
+        cache.init();
+    }
+
+    @Test
+    void eachCallerGetsItsOwnCopyOfTheCachedDetails() {
+        AuditTrailDetailsResponse first = cache.get("user1|111", "history1", this::load); // NOI18N
+        AuditTrailDetailsResponse second = cache.get("user1|111", "history1", this::load); // NOI18N
+        AuditTrailDetailsResponse third = cache.get("user1|111", "history1", this::load); // NOI18N
+
+        assertEquals(1, loads.get());
+        assertNotSame(second, third);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void detailsCachedForOneCallerAreNotServedToAnother() {
+        cache.get("user1|111", "history1", this::load); // NOI18N
+        cache.get("user2|111", "history1", this::load); // NOI18N
+        cache.get("user1|101", "history1", this::load); // NOI18N
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void valuesDeclaredAsObjectKeepTheirType() throws IOException {
+        ObjectMapper typedObjectMapper = AuditTrailDetailsCache.typedCopy(new ObjectMapper());
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("amount", new BigDecimal("1.50")); // NOI18N
+        values.put("count", new BigInteger("12345678901234567890")); // NOI18N
+        values.put("limit", 5L); // NOI18N
+        values.put("items", new ArrayList<>(Arrays.asList("a", new BigDecimal("2.0")))); // NOI18N
+
+        Map<String, Object> read = typedObjectMapper.readValue(typedObjectMapper.writeValueAsBytes(values), Map.class);
+
+        assertEquals(values, read);
+    }
+
+    @Test
+    void typesOutsideTheCharacteristicValuesAreNotRead() {
+        ObjectMapper typedObjectMapper = AuditTrailDetailsCache.typedCopy(new ObjectMapper());
+        String json = "{\"value\":[\"java.io.File\",\"/tmp\"]}"; // NOI18N
+
+        assertThrows(IOException.class, () -> typedObjectMapper.readValue(json, Map.class));
+    }
+
+    private AuditTrailDetailsResponse load() {
+        loads.incrementAndGet();
+        return new AuditTrailDetailsResponse();
+    }
+}
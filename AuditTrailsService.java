@@ -23,6 +23,9 @@ public class AuditTrailsService {
 
     private final BpsClient bpsClient;
     private final AuditTrailsMapper auditTrailsMapper;
+    private final CoalescingBpsReads coalescingBpsReads;
+    private final AuditTrailDetailsCache auditTrailDetailsCache;
+    private final RequestSecurityContext requestSecurityContext;
 
     /**
      * Get audit trails service method
@@ -33,20 +36,21 @@ public class AuditTrailsService {
     public AuditTrailsResponse getAuditTrails(String caseviewId) {
         return auditTrailsMapper.toAuditTrailsResponse(
                 ChannelsUtil.getCompletedResultFuture(
-                        bpsClient.executeGetHistoryAsync(caseviewId)
+                        coalescingBpsReads.getHistory(caseviewId)
                 ).body()
         );
     }
 
     /**
-     * Get audit trail characteristics list service method
+     * Get audit trail characteristics list service method, history records never change so the details are cached
+     * for the caller they were read for
      *
      * @param historyId history id during persist
      * @return a {@link com.experian.eda.casemanagement.generated.model.AuditTrailDetailsResponse} object
      */
     public AuditTrailDetailsResponse getAuditTrailDetails(String historyId) {
-        return auditTrailsMapper.toAuditTrailDetailsResponse(
+        return auditTrailDetailsCache.get(requestSecurityContext.getCallerKey(), historyId, () -> auditTrailsMapper.toAuditTrailDetailsResponse(
                 bpsClient.executeGetHistoryDetails(historyId).body().getData()
-        );
+        ));
     }
 }
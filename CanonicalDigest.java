@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SHA-256 digest of values in an unambiguous encoding. Every value is written with a tag for its kind and a length
+ * prefix, scalars other than strings also with their class, so {@code null}, {@code "null"}, {@code 1} and {@code "1"}
+ * all differ, and no string can be taken for a separator. Map entries are written in the order of their encoded keys,
+ * so the digest does not depend on the iteration order of a map.
+ */
+final class CanonicalDigest {
+    private static final byte NULL = 'N';
+    private static final byte STRING = 'S';
+    private static final byte SCALAR = 'V';
+    private static final byte LIST = 'L';
+    private static final byte MAP = 'M';
+
+    private final MessageDigest digest;
+
+    CanonicalDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256"); // NOI18N
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Add a value to the digest.
+     *
+     * @param value a string, a scalar, a collection or a map of such values, can be null
+     * @return this digest
+     */
+    CanonicalDigest add(Object value) {
+        digest.update(encode(value));
+        return this;
+    }
+
+    /**
+     * @return the digest of the values added, the digest is reset
+     */
+    byte[] digest() {
+        return digest.digest();
+    }
+
+    /**
+     * @return the digest of the values added as lower case hex, the digest is reset
+     */
+    String hex() {
+        byte[] bytes = digest();
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            write(output, value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void write(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof CharSequence) {
+            output.writeByte(STRING);
+            writeString(output, value.toString());
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            List<byte[][]> entries = new ArrayList<>(map.size());
+            map.forEach((key, entryValue) -> entries.add(new byte[][]{encode(key), encode(entryValue)}));
+            entries.sort((first, second) -> compare(first[0], second[0]));
+            output.writeByte(MAP);
+            output.writeInt(entries.size());
+            for (byte[][] entry : entries) {
+                output.write(entry[0]);
+                output.write(entry[1]);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            output.writeByte(LIST);
+            output.writeInt(collection.size());
+            for (Object element : collection) {
+                write(output, element);
+            }
+        } else {
+            output.writeByte(SCALAR);
+            writeString(output, value.getClass().getName());
+            writeString(output, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static int compare(byte[] first, byte[] second) {
+        for (int i = 0; i < Math.min(first.length, second.length); i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CanonicalDigestTest {
+
+    @Test
+    void mapsDigestTheSameWhateverTheirOrder() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", "1"); // NOI18N
+        first.put("b", 2); // NOI18N
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("b", 2); // NOI18N
+        second.put("a", "1"); // NOI18N
+        assertEquals(hex(first), hex(second));
+    }
+
+    @Test
+    void valuesThatPrintAlikeDigestDifferently() {
+        Map<String, Object> joined = Collections.singletonMap("a", "1,b=2"); // NOI18N
+        Map<String, Object> split = new LinkedHashMap<>();
+        split.put("a", "1"); // NOI18N
+        split.put("b", "2"); // NOI18N
+        assertNotEquals(hex(joined), hex(split));
+        assertNotEquals(hex(null), hex("null")); // NOI18N
+        assertNotEquals(hex(1), hex("1")); // NOI18N
+        assertNotEquals(hex(Arrays.asList("a", "b")), hex(Collections.singletonList("a,b"))); // NOI18N
+        assertNotEquals(new CanonicalDigest().add("ab").add("c").hex(), new CanonicalDigest().add("a").add("bc").hex()); // NOI18N
+    }
+
+    private static String hex(Object value) {
+        return new CanonicalDigest().add(value).hex();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.model.HistoryDataDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the result of converting the BPS history of a case, together with a high-water mark of the history it was
+ * converted from. BPS history is append only, so when a case is opened again and its history still has the same
+ * high-water mark the previous conversion is served instead of converting the whole history again.
+ * <p>
+ * The store is bounded by the total number of history entries it holds, and conversions expire after a time to live
+ * so a case that is no longer opened does not keep its conversion.
+ */
+@CustomLog
+@Component
+@RequiredArgsConstructor
+public class CaseHistoryStore {
+    private static final String CACHE_NAME = "CaseHistoryStore"; // NOI18N
+    private static final String CONVERSIONS_METRIC_NAME = "e1.CaseHistoryStore.conversions"; // NOI18N
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.history-store.max-history-entries:100000}")
+    private long maxHistoryEntries;
+
+    @Value("${case-management.history-store.ttl-millis:600000}")
+    private long ttlMillis;
+
+    private LocalCache<String, Converted<?>> cache;
+
+    @PostConstruct
+    void init() {
+        // Weighed by the number of history entries converted, one for an empty history
+        cache = new LocalCache<>(CACHE_NAME, maxHistoryEntries, Duration.ofMillis(ttlMillis),
+                converted -> Math.max(1L, converted.mark.size), meterRegistry);
+    }
+
+    /**
+     * Get the conversion of the history, converting it only when the history changed since the last conversion
+     * stored under the same key, or that conversion no longer holds.
+     *
+     * @param key       identifies the caller, the case and the kind of conversion
+     * @param history   the history returned by BPS, can be null
+     * @param converter converts the history, the result is shared between requests so it must be immutable and
+     *                  must not be handed out to callers as it is
+     * @param isCurrent checks whether a stored conversion still holds, for example for the configuration it used
+     * @param <T>       the conversion result type
+     * @return the converted history
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrConvert(String key, List<HistoryDataDto> history, Function<List<HistoryDataDto>, T> converter,
+                              Predicate<T> isCurrent) {
+        HighWaterMark mark = HighWaterMark.of(history);
+        Converted<?> converted = cache.getIfPresent(key);
+        if (converted != null && converted.mark.equals(mark) && isCurrent.test((T) converted.value)) {
+            meterRegistry.counter(CONVERSIONS_METRIC_NAME, "result", "unchanged").increment(); // NOI18N
+            return (T) converted.value;
+        }
+        T value = converter.apply(history);
+        cache.put(key, new Converted<>(mark, value));
+        meterRegistry.counter(CONVERSIONS_METRIC_NAME, "result", converted == null ? "new" : "changed").increment(); // NOI18N
+        LOGGER.debug("Converted {} history entries for {}", mark.size, key); // NOI18N
+        return value;
+    }
+
+    /**
+     * Forget the conversions stored under a key.
+     *
+     * @param key identifies the case and the kind of conversion
+     */
+    public void evict(String key) {
+        cache.invalidate(key);
+    }
+
+    private static final class Converted<T> {
+        private final HighWaterMark mark;
+        private final T value;
+
+        private Converted(HighWaterMark mark, T value) {
+            this.mark = mark;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The size of the history, the completion time of its latest entry and a SHA-256 digest over all its entries
+     * including their characteristic values, cheap to compute compared to converting the history.
+     */
+    private static final class HighWaterMark {
+        private final int size;
+        private final Object latestCompleted;
+        private final byte[] digest;
+
+        private HighWaterMark(int size, Object latestCompleted, byte[] digest) {
+            this.size = size;
+            this.latestCompleted = latestCompleted;
+            this.digest = digest;
+        }
+
+        private static HighWaterMark of(List<HistoryDataDto> history) {
+            List<HistoryDataDto> entries = history != null ? history : Collections.emptyList();
+            CanonicalDigest digest = new CanonicalDigest();
+            for (HistoryDataDto entry : entries) {
+                digest.add(entry.getCompleted()).add(entry.getType()).add(entry.getServiceId()).add(entry.getUserId())
+                        .add(characteristics(entry));
+            }
+            Object latestCompleted = entries.isEmpty() ? null : entries.get(entries.size() - 1).getCompleted();
+            return new HighWaterMark(entries.size(), latestCompleted, digest.digest());
+        }
+
+        private static Map<Object, List<Object>> characteristics(HistoryDataDto entry) {
+            if (entry.getCharacteristics() == null) {
+                return null;
+            }
+            Map<Object, List<Object>> characteristics = new LinkedHashMap<>();
+            entry.getCharacteristics().forEach((key, characteristic) -> characteristics.put(key, Arrays.asList(
+                    characteristic.getCurrentValue(), characteristic.getPreviousValue(), characteristic.getDataType())));
+            return characteristics;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof HighWaterMark)) {
+                return false;
+            }
+            HighWaterMark that = (HighWaterMark) other;
+            return size == that.size && Arrays.equals(digest, that.digest) && Objects.equals(latestCompleted, that.latestCompleted);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(digest);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.model.HistoryDataDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+class CaseHistoryStoreTest {
+    private static final String KEY = "activities/user/appId/service"; // NOI18N
+
+    private final AtomicInteger conversions = new AtomicInteger();
+    private CaseHistoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CaseHistoryStore(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "maxHistoryEntries", 2L); // NOI18N
+        ReflectionTestUtils.setField(store, "ttlMillis", 60_000L); // NOI18N
+        store.init();
+    }
+
+    @Test
+    void reusesTheConversionOfAnUnchangedHistory() throws ReflectiveOperationException {
+        convert(Collections.singletonList(entry("100"))); // NOI18N
+        convert(Collections.singletonList(entry("100"))); // NOI18N
+        assertEquals(1, conversions.get());
+    }
+
+    @Test
+    void convertsAgainWhenOnlyACharacteristicValueChanged() throws ReflectiveOperationException {
+        convert(Collections.singletonList(entry("100"))); // NOI18N
+        convert(Collections.singletonList(entry("200"))); // NOI18N
+        assertEquals(2, conversions.get());
+    }
+
+    @Test
+    void convertsAgainWhenTheConversionNoLongerHolds() throws ReflectiveOperationException {
+        List<HistoryDataDto> history = Collections.singletonList(entry("100")); // NOI18N
+        store.getOrConvert(KEY, history, entries -> conversions.incrementAndGet(), converted -> false);
+        store.getOrConvert(KEY, history, entries -> conversions.incrementAndGet(), converted -> false);
+        assertEquals(2, conversions.get());
+    }
+
+    @Test
+    void isBoundedByTheNumberOfHistoryEntriesItHolds() throws ReflectiveOperationException {
+        List<HistoryDataDto> history = Collections.singletonList(entry("100")); // NOI18N
+        convert(history);
+        // Two more entries, over the limit of two, so the first conversion is evicted
+        store.getOrConvert(KEY + "/other", Arrays.asList(entry("1"), entry("2")), // NOI18N
+                entries -> conversions.incrementAndGet(), converted -> true);
+        convert(history);
+        assertEquals(3, conversions.get());
+    }
+
+    private void convert(List<HistoryDataDto> history) {
+        store.getOrConvert(KEY, history, entries -> conversions.incrementAndGet(), converted -> true);
+    }
+
+    private static HistoryDataDto entry(Object currentValue) throws ReflectiveOperationException {
+        HistoryDataDto entry = mock(HistoryDataDto.class);
+        lenient().when(entry.getType()).thenReturn("SEARCH AND UPDATE"); // NOI18N
+        lenient().when(entry.getServiceId()).thenReturn("service"); // NOI18N
+        lenient().when(entry.getUserId()).thenReturn("user"); // NOI18N
+        // The characteristic type is only reachable through the signature of getCharacteristics
+        Class<?> characteristicType = (Class<?>) ((ParameterizedType) HistoryDataDto.class
+                .getMethod("getCharacteristics").getGenericReturnType()).getActualTypeArguments()[1]; // NOI18N
+        Object characteristic = mock(characteristicType);
+        characteristicType.getMethod("getCurrentValue").invoke(doReturn(currentValue).when(characteristic)); // NOI18N
+        doReturn(Collections.singletonMap("amount", characteristic)).when(entry).getCharacteristics(); // NOI18N
+        return entry;
+    }
+}
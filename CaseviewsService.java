@@ -10,7 +10,6 @@ import com.experian.eda.casemanagement.channel.bps.v0.model.BpsLockResponse;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BpsTotalCountResponse;
 import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewBpsResponse;
 import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewListBpsResponse;
-import com.experian.eda.casemanagement.common.util.SecurityUtil;
 import com.experian.eda.casemanagement.exception.ErrorCode;
 import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
 import com.experian.eda.casemanagement.exception.ResourceLockedException;
@@ -23,22 +22,41 @@ import com.experian.eda.casemanagement.generated.model.CaseViewModel;
 import com.experian.eda.casemanagement.generated.model.CaseViewResponse;
 import com.experian.eda.casemanagement.service.mapper.caseviews.CaseViewMapper;
 import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.CustomLog;
-import lombok.RequiredArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.ObjectUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -62,8 +80,81 @@ public class CaseviewsService {
         private String xExternalUserValue;
     }
 
+    /**
+     * A page of a cursor based multi-case search.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CaseViewListPage {
+        private final CaseViewListResponse response;
+        /** The cursor to the next page, null when this page is the last one. */
+        private final String nextCursor;
+    }
+
+    /**
+     * The outcome of patching one case as part of a batch.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class PatchCaseResult {
+        /** The id of the case the patch was requested for. */
+        private final String caseviewId;
+        /** The reason the case was not patched, null when the patch succeeded. */
+        private final Throwable failure;
+
+        public boolean isPatched() {
+            return failure == null;
+        }
+    }
+
+    private static final String SINGLE_CASE_READ_METRIC_NAME = "e1.CaseviewsService.singleCaseRead"; // NOI18N
+    private static final String SINGLE_CASE_READ_LOCK = "lock"; // NOI18N
+    private static final String SINGLE_CASE_READ_FETCH = "fetch"; // NOI18N
+    private static final String CURSOR_FIELD_NAME = "cursor"; // NOI18N
+
     private final BpsClient bpsClient;
     private final CaseViewMapper caseViewsMapper;
+    private final LockStatusCache lockStatusCache;
+    private final SearchCountCache searchCountCache;
+    private final CoalescingBpsReads coalescingBpsReads;
+    private final RequestSecurityContext requestSecurityContext;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.single-case-read.parallel-lock-check:true}")
+    private boolean parallelLockCheck;
+
+    @Value("${case-management.single-case-read.lock-check-parallelism:4}")
+    private int lockCheckParallelism;
+
+    @Value("${case-management.batch-patch.parallelism:8}")
+    private int batchPatchParallelism;
+
+    @Value("${case-management.search-pipeline.parallelism:16}")
+    private int searchPipelineParallelism;
+
+    private ExecutorService batchPatchExecutor;
+
+    private ExecutorService searchPipelineExecutor;
+
+    /** Checks the lock of single case reads, kept apart so that a burst of searches does not delay the reads. */
+    private ExecutorService lockCheckExecutor;
+
+    @PostConstruct
+    void initExecutors() {
+        batchPatchExecutor = new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(
+                batchPatchParallelism, new CustomizableThreadFactory("batch-patch-"))); // NOI18N
+        searchPipelineExecutor = Executors.newFixedThreadPool(
+                searchPipelineParallelism, new CustomizableThreadFactory("search-pipeline-")); // NOI18N
+        lockCheckExecutor = new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(
+                lockCheckParallelism, new CustomizableThreadFactory("single-case-lock-"))); // NOI18N
+    }
+
+    @PreDestroy
+    void shutdownExecutors() {
+        batchPatchExecutor.shutdown();
+        searchPipelineExecutor.shutdown();
+        lockCheckExecutor.shutdown();
+    }
 
     /**
      * Given the service id, runs the BPS service with the supplied data and returns the response data in
@@ -78,9 +169,70 @@ public class CaseviewsService {
      * @param externalUserConfigDto  X-External-User header value that contains external user id together with optional characteristic to inject it into.
      */
     public void runPatchCase(String serviceId, String bpsBusinessKey, String caseviewId, boolean retainLock, Map<String, Object> dataElementsToPatch, String format, ExternalUserConfigDto externalUserConfigDto) {
-        String xExternalUser = externalUserConfigDto.getXExternalUserValue();
-        throwIfLockNotRespected(Boolean.TRUE, caseviewId, Boolean.TRUE, xExternalUser);
+        throwIfLockNotRespected(Boolean.TRUE, caseviewId, Boolean.TRUE, externalUserConfigDto.getXExternalUserValue(), Boolean.TRUE);
+        patchCase(serviceId, bpsBusinessKey, caseviewId, retainLock, dataElementsToPatch, format, externalUserConfigDto);
+    }
+
+    /**
+     * Patches many cases with the same BPS service. The locks of all the cases are checked with a single BPS round
+     * trip and the updates of the cases that pass the check are then sent with bounded parallelism.
+     *
+     * @param serviceId                       the BPS service id.
+     * @param bpsBusinessKey                  The business key for the BPS use-case being accessed.
+     * @param retainLock                      retainLock flag to pass for the BPS
+     * @param dataElementsToPatchByCaseviewId The data elements (characteristics) to patch keyed by the id of the case.
+     * @param format                          format to indicate is flat or hierachical json
+     * @param externalUserConfigDto           X-External-User header value that contains external user id together with optional characteristic to inject it into.
+     * @return the result of each case, in the iteration order of the supplied map.
+     */
+    public List<PatchCaseResult> runPatchCases(String serviceId, String bpsBusinessKey, boolean retainLock,
+                                               Map<String, Map<String, Object>> dataElementsToPatchByCaseviewId,
+                                               String format, ExternalUserConfigDto externalUserConfigDto) {
+        if (!ChannelsUtil.FORMAT_FLAT.equals(format) && !ChannelsUtil.FORMAT_HIERARCHICAL.equals(format)) {
+            throw new ResourceBadRequestException(ChannelsUtil.EXPECTED_PARAM_MISMATCH, ChannelsUtil.FORMAT_FIELD_NAME, ChannelsUtil.EXPECTED_PARAM_MISMATCH);
+        }
+        if (CollectionUtils.isEmpty(dataElementsToPatchByCaseviewId)) {
+            return Collections.emptyList();
+        }
+        String userId = getLockUserId(externalUserConfigDto.getXExternalUserValue());
+        Map<String, BpsLockResponse> lockMap = lockStatusCache.getLockStatus(dataElementsToPatchByCaseviewId.keySet(), Boolean.TRUE);
 
+        Map<String, CompletableFuture<PatchCaseResult>> resultFutures = new LinkedHashMap<>();
+        dataElementsToPatchByCaseviewId.forEach((caseviewId, dataElementsToPatch) -> {
+            CompletableFuture<PatchCaseResult> resultFuture;
+            try {
+                verifyLock(caseviewId, lockMap.get(caseviewId), Boolean.TRUE, userId);
+                resultFuture = CompletableFuture.supplyAsync(() -> {
+                    patchCase(serviceId, bpsBusinessKey, caseviewId, retainLock, dataElementsToPatch, format, externalUserConfigDto);
+                    return new PatchCaseResult(caseviewId, null);
+                }, batchPatchExecutor);
+            } catch (RuntimeException ex) {
+                resultFuture = CompletableFuture.completedFuture(new PatchCaseResult(caseviewId, ex));
+            }
+            resultFutures.put(caseviewId, resultFuture.exceptionally(ex -> new PatchCaseResult(caseviewId,
+                    ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex)));
+        });
+
+        List<PatchCaseResult> results = new ArrayList<>(resultFutures.size());
+        resultFutures.values().forEach(resultFuture -> results.add(resultFuture.join()));
+        long failures = results.stream().filter(result -> !result.isPatched()).count();
+        if (failures > 0) {
+            LOGGER.warn("{} of {} cases were not patched by BPS service {}", failures, results.size(), serviceId); // NOI18N
+        }
+        return results;
+    }
+
+    private void patchCase(String serviceId, String bpsBusinessKey, String caseviewId, boolean retainLock, Map<String, Object> dataElementsToPatch, String format, ExternalUserConfigDto externalUserConfigDto) {
+        try {
+            executePatch(serviceId, bpsBusinessKey, caseviewId, retainLock, dataElementsToPatch, format, externalUserConfigDto);
+        } finally {
+            // The update may have released or taken the lock of the case
+            lockStatusCache.evict(caseviewId);
+        }
+    }
+
+    private void executePatch(String serviceId, String bpsBusinessKey, String caseviewId, boolean retainLock, Map<String, Object> dataElementsToPatch, String format, ExternalUserConfigDto externalUserConfigDto) {
+        String xExternalUser = externalUserConfigDto.getXExternalUserValue();
         Map<String, Object> bpsData = new HashMap<>(dataElementsToPatch);
         CaseViewBpsResponse bpsResponse;
         // TOBEDONE - return value for patch
@@ -118,10 +270,63 @@ public class CaseviewsService {
      * @return the response data in the format defined in the case-management-svc API.
      */
     public CaseViewListResponse runGetMultipleCasesSearchV2(String serviceId, String bpsBusinessKey, String format, List<String> actions, Map<String, Object> searchCriteriaData, Integer page, Integer pageSize) {
-        boolean isFlat;
-        CompletableFuture<RestResponse<CaseViewListBpsResponse>> bpsSearchResponse = null;
-        CompletableFuture<RestResponse<BpsTotalCountResponse>> bpsCountResponse = null;
+        return ChannelsUtil.getCompletedResultFuture(
+                runGetMultipleCasesSearchV2Async(serviceId, bpsBusinessKey, format, actions, searchCriteriaData, page, pageSize));
+    }
+
+    /**
+     * Asynchronous variant of {@link #runGetMultipleCasesSearchV2(String, String, String, List, Map, Integer, Integer)}.
+     * The lock status is requested as soon as the business keys of the search result are known, the search result is
+     * mapped while BPS answers and the count is joined last.
+     *
+     * @param serviceId              the BPS service id.
+     * @param bpsBusinessKey         The business key for the BPS use-case being accessed.
+     * @param format                 format to indicate is flat or hierarchical json
+     * @param actions                to indicate what action should be performed - search (or) count (or) search,count
+     * @param searchCriteriaData     optional parameters based on which Search caseList is performed.
+     * @param page               The page number parameter.
+     * @param pageSize           The page size parameter.
+     * @return the future of the response data in the format defined in the case-management-svc API.
+     */
+    public CompletableFuture<CaseViewListResponse> runGetMultipleCasesSearchV2Async(String serviceId, String bpsBusinessKey, String format, List<String> actions, Map<String, Object> searchCriteriaData, Integer page, Integer pageSize) {
+        return searchPageAsync(serviceId, bpsBusinessKey, format, actions, searchCriteriaData, page, pageSize, null)
+                .thenApply(CaseViewListPage::getResponse);
+    }
+
+    /**
+     * Cursor based variant of {@link #runGetMultipleCasesSearchV2(String, String, String, List, Map, Integer, Integer)}.
+     * The first page is requested without a cursor, each page comes with the cursor to the next one. The cursor is not
+     * signed and does not carry the total count, each page takes it from the {@link SearchCountCache}.
+     *
+     * @param serviceId              the BPS service id.
+     * @param bpsBusinessKey         The business key for the BPS use-case being accessed.
+     * @param format                 format to indicate is flat or hierarchical json
+     * @param actions                to indicate what action should be performed - search (or) count (or) search,count
+     * @param searchCriteriaData     optional parameters based on which Search caseList is performed.
+     * @param cursor                 the cursor returned with the previous page, null or blank for the first page
+     * @param firstPage              the page number of the first page, used when there is no cursor
+     * @param pageSize               The page size parameter, a cursor is only accepted with the page size it was issued for.
+     * @return the page and the cursor to the next page
+     * @throws ResourceBadRequestException if the cursor is malformed or belongs to another search or page size
+     */
+    public CaseViewListPage runGetMultipleCasesSearchV2Page(String serviceId, String bpsBusinessKey, String format, List<String> actions, Map<String, Object> searchCriteriaData, String cursor, Integer firstPage, Integer pageSize) {
+        String criteriaHash = SearchCursor.criteriaHash(serviceId, format, searchCriteriaData);
+        SearchCursor searchCursor = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            if (pageSize == null) {
+                throw new ResourceBadRequestException(ChannelsUtil.EXPECTED_PARAM_MISMATCH, CURSOR_FIELD_NAME, ChannelsUtil.EXPECTED_PARAM_MISMATCH);
+            }
+            searchCursor = SearchCursor.decode(cursor, criteriaHash, pageSize);
+        }
+        Integer page = searchCursor != null ? Integer.valueOf(searchCursor.getPage()) : firstPage;
+        return ChannelsUtil.getCompletedResultFuture(
+                searchPageAsync(serviceId, bpsBusinessKey, format, actions, searchCriteriaData, page, pageSize, criteriaHash));
+    }
 
+    private CompletableFuture<CaseViewListPage> searchPageAsync(String serviceId, String bpsBusinessKey, String format, List<String> actions,
+                                                                Map<String, Object> searchCriteriaData, Integer page, Integer pageSize,
+                                                                String criteriaHash) {
+        boolean isFlat;
         switch (format) {
             case ChannelsUtil.FORMAT_FLAT:
                 isFlat = Boolean.TRUE;
@@ -135,88 +340,89 @@ public class CaseviewsService {
                     ChannelsUtil.EXPECTED_PARAM_MISMATCH);
         }
 
+        // The pipeline stages run outside of the request thread, so they carry the security context of the caller
+        Executor executor = new DelegatingSecurityContextExecutor(searchPipelineExecutor, SecurityContextHolder.getContext());
+        CompletableFuture<List<CaseViewListModel>> caseViewListFuture = CompletableFuture.completedFuture(null);
+        CompletableFuture<BpsTotalCountResponse> countFuture = CompletableFuture.completedFuture(null);
+        boolean isCount = actions.contains(ActionType.COUNT.toString());
+
         if (actions.contains(ActionType.SEARCH.toString())) {
-            bpsSearchResponse = bpsClient.executeSearchServiceAsync(serviceId, searchCriteriaData, isFlat, page, pageSize);
+            caseViewListFuture = coalescingBpsReads.search(serviceId, format, searchCriteriaData, isFlat, page, pageSize)
+                    .thenComposeAsync(response -> toCaseViewListModels(bpsBusinessKey, response.body(), isFlat, executor), executor);
         }
-        if (actions.contains(ActionType.COUNT.toString())) {
-            bpsCountResponse = bpsClient.executeGetTotalCountAsync(serviceId, searchCriteriaData, isFlat);
+        // Identical searches share their count for a short while, the later pages of a search mostly reuse it
+        if (isCount) {
+            countFuture = searchCountCache.getTotalCount(
+                    criteriaHash != null ? criteriaHash : SearchCursor.criteriaHash(serviceId, format, searchCriteriaData),
+                    () -> bpsClient.executeGetTotalCountAsync(serviceId, searchCriteriaData, isFlat)
+                            .thenApplyAsync(RestResponse::body, executor));
         }
-        return getCaseViewListResponse(bpsBusinessKey, bpsSearchResponse, bpsCountResponse, isFlat, page, pageSize);
-    }
+        // Combined on the pipeline executor, never on the HTTP client thread that completed the last BPS call
+        return caseViewListFuture.thenCombineAsync(countFuture, (caseViewListModelList, countResponse) -> {
+            Integer caseListCount = null;
+            Long totalCount = null;
+            Long totalPageNumber = null;
+            if (isCount) { // This will be true when action='search,count' or action='count'
+                totalCount = countResponse != null ? countResponse.getTotalCount() : null;
+                if (totalCount != null && pageSize != null && pageSize > 0) {
+                    totalPageNumber = (totalCount + pageSize - 1) / pageSize;
+                }
 
-    /**
-     * Extracts data from the asynchronous REST responses and returns the response data in
-     * the format defined in the case-management-svc API.
-     *
-     * @param bpsBusinessKey    The business key for the BPS use-case being accessed.
-     * @param bpsSearchResponse RestRequest async bps search call response
-     * @param bpsCountResponse  RestRequest async bps count call response
-     * @param isFlat            Flag to indicate the format type is flat or hierarchical.
-     * @return the response data in the format defined in the case-management-svc API.
-     */
-    private CaseViewListResponse getCaseViewListResponse(String bpsBusinessKey,
-                                                         CompletableFuture<RestResponse<CaseViewListBpsResponse>> bpsSearchResponse,
-                                                         CompletableFuture<RestResponse<BpsTotalCountResponse>> bpsCountResponse,
-                                                         boolean isFlat,
-                                                         Integer page,
-                                                         Integer pageSize) {
-        List<CaseViewModel> caseViewModelList;
-        CaseViewListBpsResponse searchResponse;
-        BpsTotalCountResponse countResponse;
-
-        List<CaseViewListModel> caseViewListModelList = null;
-        Integer caseListCount = null;
-        Long totalCount = null;
-        Long totalPageNumber = null;
-
-        if (bpsSearchResponse != null) { // This will be true when action='search' or action='search,count'
-            searchResponse = ChannelsUtil.getCompletedResultFuture(bpsSearchResponse).body();
-            if (!CollectionUtils.isEmpty(searchResponse.getData())) {
-                caseViewModelList = searchResponse.getData().stream()
-                    .map(datum -> caseViewsMapper.toCaseViewModelStrongTyped(datum, isFlat ?
-                        ChannelsUtil.getFlatBusinessKeyOrThrow(bpsBusinessKey, datum) :
-                        ChannelsUtil.getHierarchicalBusinessKeyOrThrow(bpsBusinessKey, datum)))
-                    .collect(Collectors.toList());
-                caseViewListModelList = getLockStatus(caseViewModelList);
-            } else {
-                caseViewListModelList = Collections.emptyList();
+                // caseViewListModelList will not be null only if action='search,count', then set caseListCount based on caseViewListModelList size.
+                // That means, caseListCount will have a valid value only when action='search,count'.
+                caseListCount = caseViewListModelList != null ? caseViewListModelList.size() : null;
             }
-        }
-
-        if (bpsCountResponse != null) { // This will be true when action='search,count' or action='count'
-            countResponse = ChannelsUtil.getCompletedResultFuture(bpsCountResponse).body();
-            totalCount = countResponse != null ? countResponse.getTotalCount() : null;
+            CaseViewListResponse response = caseViewsMapper.toCaseViewListResponse(caseViewListModelList, caseListCount, totalCount, page, pageSize, totalPageNumber);
+            return new CaseViewListPage(response, nextCursor(criteriaHash, caseViewListModelList, page, pageSize));
+        }, executor);
+    }
 
-            // caseViewListModelList will not be null only if action='search,count', then set caseListCount based on caseViewListModelList size.
-            // That means, caseListCount will have a valid value only when action='search,count'.
-            caseListCount = caseViewListModelList != null ? caseViewListModelList.size() : null;
+    private static String nextCursor(String criteriaHash, List<CaseViewListModel> caseViewListModelList, Integer page,
+                                     Integer pageSize) {
+        // A short page is the last one
+        if (criteriaHash == null || caseViewListModelList == null || page == null || pageSize == null
+                || caseViewListModelList.size() < pageSize) {
+            return null;
         }
-        return caseViewsMapper.toCaseViewListResponse(caseViewListModelList, caseListCount, totalCount, page, pageSize, totalPageNumber);
+        return SearchCursor.of(criteriaHash, page + 1, pageSize).encode();
     }
 
     /**
-     * Get the lock status of each caseviews
+     * Maps the search result to the API model, fetching the lock status of the cases at the same time.
      *
-     * @param caseViewModelList Caseviews list retrieved
-     * @return caseViewModelList with lock status
+     * @param bpsBusinessKey The business key for the BPS use-case being accessed.
+     * @param searchResponse The BPS search response.
+     * @param isFlat         Flag to indicate the format type is flat or hierarchical.
+     * @param executor       The executor that fetches the lock status.
+     * @return the future of the caseviews with their lock status
      */
-    private List<CaseViewListModel> getLockStatus(List<CaseViewModel> caseViewModelList) {
-        List<CaseViewListModel> newCaseViewModelList = null;
-
-        if (!CollectionUtils.isEmpty(caseViewModelList)) {
-            Set<String> businessKeySet = caseViewModelList.stream()
-                    .map(CaseViewModel::getCaseviewId)
-                    .collect(Collectors.toSet());
-            Map<String, BpsLockResponse> lockMap = bpsClient.executeGetLockStatus(businessKeySet);
-
-           newCaseViewModelList = caseViewModelList.stream()
-                    .map(caseViewModel -> caseViewsMapper.toCaseViewModelWithLock(
-                            lockMap.get(caseViewModel.getCaseviewId()),
-                            caseViewModel))
-                    .collect(Collectors.toList());
+    private CompletableFuture<List<CaseViewListModel>> toCaseViewListModels(String bpsBusinessKey,
+                                                                          CaseViewListBpsResponse searchResponse,
+                                                                          boolean isFlat,
+                                                                          Executor executor) {
+        if (CollectionUtils.isEmpty(searchResponse.getData())) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
+        List<String> businessKeys = searchResponse.getData().stream()
+                .map(datum -> isFlat ?
+                        ChannelsUtil.getFlatBusinessKeyOrThrow(bpsBusinessKey, datum) :
+                        ChannelsUtil.getHierarchicalBusinessKeyOrThrow(bpsBusinessKey, datum))
+                .collect(Collectors.toList());
+        Set<String> businessKeySet = new HashSet<>(businessKeys);
+        CompletableFuture<Map<String, BpsLockResponse>> lockMapFuture = CompletableFuture.supplyAsync(
+                () -> lockStatusCache.getLockStatus(businessKeySet, Boolean.FALSE), executor);
+
+        // The data and the business keys extracted from it are in the same order
+        Iterator<String> businessKeyIterator = businessKeys.iterator();
+        List<CaseViewModel> caseViewModelList = searchResponse.getData().stream()
+                .map(datum -> caseViewsMapper.toCaseViewModelStrongTyped(datum, businessKeyIterator.next()))
+                .collect(Collectors.toList());
 
-        return newCaseViewModelList;
+        return lockMapFuture.thenApply(lockMap -> caseViewModelList.stream()
+                .map(caseViewModel -> caseViewsMapper.toCaseViewModelWithLock(
+                        lockMap.get(caseViewModel.getCaseviewId()),
+                        caseViewModel))
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -232,9 +438,17 @@ public class CaseviewsService {
      * @return the response data in the format defined in the case-management-svc API.
      */
     public CaseViewResponse runGetSingleCaseUpdate(String serviceId, String bpsBusinessKey, boolean retainLock, String caseviewId, String format, ExternalUserConfigDto externalUserConfigDto) {
-        String xExternalUser = externalUserConfigDto.getXExternalUserValue();
-        throwIfLockNotRespected(Boolean.TRUE, caseviewId, Boolean.FALSE, xExternalUser);
+        throwIfLockNotRespected(Boolean.TRUE, caseviewId, Boolean.FALSE, externalUserConfigDto.getXExternalUserValue(), Boolean.TRUE);
+        try {
+            return executeSingleCaseUpdate(serviceId, bpsBusinessKey, retainLock, caseviewId, format, externalUserConfigDto);
+        } finally {
+            // The update may have released or taken the lock of the case
+            lockStatusCache.evict(caseviewId);
+        }
+    }
 
+    private CaseViewResponse executeSingleCaseUpdate(String serviceId, String bpsBusinessKey, boolean retainLock, String caseviewId, String format, ExternalUserConfigDto externalUserConfigDto) {
+        String xExternalUser = externalUserConfigDto.getXExternalUserValue();
         CaseViewBpsResponse bpsResponse;
         switch (format) {
             case ChannelsUtil.FORMAT_FLAT:
@@ -275,29 +489,87 @@ public class CaseviewsService {
      * @throws ResourceLockedException  if respectLock=true and BPS locked the case
      */
     public CaseViewResponse runGetSingleCaseSearch(String serviceId, String bpsBusinessKey, boolean respectLock, String caseviewId, String format, String xExternalUser) {
-        throwIfLockNotRespected(respectLock, caseviewId, Boolean.FALSE, xExternalUser);
+        return runGetSingleCaseSearch(serviceId, bpsBusinessKey, respectLock, caseviewId, format, xExternalUser, Boolean.FALSE);
+    }
 
+    /**
+     * Same as {@link #runGetSingleCaseSearch(String, String, boolean, String, String, String)} with control over
+     * the lock status cache.
+     *
+     * @param serviceId       the BPS service id.
+     * @param bpsBusinessKey  The business key for the BPS use-case being accessed.
+     * @param respectLock     When true, lock will be checked before use-case being accessed.
+     * @param caseviewId      the id of the case being accessed.
+     * @param format          format to indicate is flat or hierachical json
+     * @param xExternalUser   X-External-User header that contains external user id.
+     * @param bypassLockCache When true, the lock is always checked against BPS rather than the lock status cache.
+     * @return the response data in the format defined in the case-management-svc API.
+     * @throws ResourceUnknownException if BPS does not return the expected businessKey
+     * @throws ResourceLockedException  if respectLock=true and BPS locked the case
+     */
+    public CaseViewResponse runGetSingleCaseSearch(String serviceId, String bpsBusinessKey, boolean respectLock, String caseviewId, String format, String xExternalUser, boolean bypassLockCache) {
+        if (!respectLock || !parallelLockCheck) {
+            throwIfLockNotRespected(respectLock, caseviewId, Boolean.FALSE, xExternalUser, bypassLockCache);
+            return timedSingleCaseRead(SINGLE_CASE_READ_FETCH, () -> searchSingleCase(serviceId, bpsBusinessKey, caseviewId, format, xExternalUser));
+        }
+
+        // The lock lookup and the case fetch do not depend on each other, so they are sent to BPS in parallel. The
+        // fetched case is only returned once the lock check passed.
+        String userId = getLockUserId(xExternalUser);
+        CompletableFuture<BpsLockResponse> lockFuture = CompletableFuture.supplyAsync(
+                () -> timedSingleCaseRead(SINGLE_CASE_READ_LOCK, () -> lockStatusCache.getLock(caseviewId, bypassLockCache)),
+                lockCheckExecutor);
+        CaseViewResponse caseViewResponse;
+        try {
+            caseViewResponse = timedSingleCaseRead(SINGLE_CASE_READ_FETCH, () -> searchSingleCase(serviceId, bpsBusinessKey, caseviewId, format, xExternalUser));
+        } catch (RuntimeException ex) {
+            // A failed lock check is reported ahead of a failed fetch, as when the lock was checked first
+            verifyLock(caseviewId, ChannelsUtil.getCompletedResultFuture(lockFuture), Boolean.FALSE, userId);
+            throw ex;
+        }
+        verifyLock(caseviewId, ChannelsUtil.getCompletedResultFuture(lockFuture), Boolean.FALSE, userId);
+        return caseViewResponse;
+    }
+
+    private <T> T timedSingleCaseRead(String call, Supplier<T> supplier) {
+        long startNanos = System.nanoTime();
+        String outcome = "failure"; // NOI18N
+        try {
+            T result = supplier.get();
+            outcome = "success"; // NOI18N
+            return result;
+        } finally {
+            meterRegistry.timer(SINGLE_CASE_READ_METRIC_NAME, "call", call, "outcome", outcome) // NOI18N
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CaseViewResponse searchSingleCase(String serviceId, String bpsBusinessKey, String caseviewId, String format, String xExternalUser) {
         CaseViewListBpsResponse bpsResponse;
-        List<CaseViewModel> caseViewModelList = null;
+        CaseViewModel caseViewModel = null;
+        // Scan the raw data for the element whose business key is the caseviewId of interest, only that element is
+        // mapped. BPS may return other elements, and the one of interest is not necessarily the first.
         switch (format) {
             case ChannelsUtil.FORMAT_FLAT:
                 bpsResponse = bpsClient.executeSearchService(serviceId,
                         Collections.singletonMap(bpsBusinessKey, caseviewId), Boolean.TRUE, xExternalUser);
                 if (!CollectionUtils.isEmpty(bpsResponse.getData())) {
-                    caseViewModelList = bpsResponse.getData().stream().map(datum ->
-                                    caseViewsMapper.toCaseViewModelStrongTyped(datum,
-                                            ChannelsUtil.getFlatBusinessKeyOrThrow(bpsBusinessKey, datum)))
-                            .collect(Collectors.toList());
+                    caseViewModel = bpsResponse.getData().stream()
+                            .filter(datum -> Objects.equals(ChannelsUtil.getFlatBusinessKeyOrThrow(bpsBusinessKey, datum), caseviewId))
+                            .findFirst()
+                            .map(datum -> caseViewsMapper.toCaseViewModelStrongTyped(datum, caseviewId))
+                            .orElse(null);
                 }
                 break;
             case ChannelsUtil.FORMAT_HIERARCHICAL:
                 bpsResponse = bpsClient.executeSearchService(serviceId,
                         ChannelsUtil.getHierarchicalBusinessKeyValue(bpsBusinessKey, caseviewId), Boolean.FALSE, xExternalUser);
                 if (!CollectionUtils.isEmpty(bpsResponse.getData())) {
-                    caseViewModelList = bpsResponse.getData().stream().map(datum ->
-                                    caseViewsMapper.toCaseViewModelStrongTyped(datum,
-                                            ChannelsUtil.getHierarchicalBusinessKeyOrThrow(bpsBusinessKey, datum)))
-                            .collect(Collectors.toList());
+                    caseViewModel = bpsResponse.getData().stream()
+                            .filter(datum -> Objects.equals(ChannelsUtil.getHierarchicalBusinessKeyOrThrow(bpsBusinessKey, datum), caseviewId))
+                            .findFirst()
+                            .map(datum -> caseViewsMapper.toCaseViewModelStrongTyped(datum, caseviewId))
+                            .orElse(null);
                 }
                 break;
             default:
@@ -306,50 +578,55 @@ public class CaseviewsService {
                         ChannelsUtil.EXPECTED_PARAM_MISMATCH);
         }
 
-        // TOBEDONE - To check if this first retrieval is the best way,
-        //            high chance that the element is not at the first index but exist at other index
-        if (!CollectionUtils.isEmpty(caseViewModelList)) {
-            CaseViewModel firstModel = caseViewModelList.get(0);
-            // We expect just one entry that will have the bpsBusinessKey=caseviewId of interest.
-            // If not tolerate the data if the first entry satisfies bpsBusinessKey=caseviewId.
-            if (Objects.equals(firstModel.getCaseviewId(), caseviewId)) {
-                if (caseViewModelList.size() > 1) {
-                    LOGGER.warn("Additional BPS data elements being ignored"); // NOI18N
-                }
-                return caseViewsMapper.toCaseViewResponse(firstModel);
-            } else {
-                LOGGER.warn("First BPS data element not the expected caseviewId of {}, got {}. Returning empty.",  // NOI18N
-                        caseviewId, firstModel.getCaseviewId());
+        if (caseViewModel != null) {
+            if (bpsResponse.getData().size() > 1) {
+                LOGGER.warn("Additional BPS data elements being ignored"); // NOI18N
             }
+            return caseViewsMapper.toCaseViewResponse(caseViewModel);
+        }
+        if (!CollectionUtils.isEmpty(bpsResponse.getData())) {
+            LOGGER.warn("None of the {} BPS data elements is the expected caseviewId of {}. Returning empty.",  // NOI18N
+                    bpsResponse.getData().size(), caseviewId);
         }
         return caseViewsMapper.toCaseViewResponse(null);
     }
 
-    private void throwIfLockNotRespected(boolean respectLock, String caseviewId, boolean isUpdate, String xExternalUser) {
+    private void throwIfLockNotRespected(boolean respectLock, String caseviewId, boolean isUpdate, String xExternalUser, boolean bypassLockCache) {
         if (respectLock) {
-            // format the xExternalUser
-            String userId;
-            if (ObjectUtils.isEmpty(xExternalUser)) {
-                userId = SecurityUtil.getUserId();
-            } else {
-                userId = String.format("%s/%s", xExternalUser, SecurityUtil.getUserId());
-            }
-            BpsLockResponse bpsLockResponse = bpsClient.executeGetLock(caseviewId);
-            if (bpsLockResponse.getBusinessKey() != null && !Objects.equals(caseviewId, bpsLockResponse.getBusinessKey())) {
-                throw new ResourceUnknownException(ErrorCode.INVALID_LOCKED_RESOURCE,
-                        String.format("Unexpected resource from BPS. Expecting lock status for caseViewId=[%s], but received [%s] instead", // NOI18N
-                                caseviewId, bpsLockResponse.getBusinessKey()));
-            }
-            if (isUpdate && bpsLockResponse.getUserId() == null) {
-                throw new ResourceLockedException(
-                        String.format("Resource [%s] is not locked by current user", caseviewId), // NOI18N
-                        ErrorCode.NOT_LOCKED, ResponseStatus.NOT_LOCKED_ROW_ERROR);
-            }
-            if (bpsLockResponse.getUserId() != null && !Objects.equals(bpsLockResponse.getUserId(), userId)) {
-                throw new ResourceLockedException(
-                        String.format("Resource [%s] is being locked by other user", bpsLockResponse.getBusinessKey()), // NOI18N
-                        bpsLockResponse.getUserId(), bpsLockResponse.getTimestamp());
-            }
+            String userId = getLockUserId(xExternalUser);
+            verifyLock(caseviewId, lockStatusCache.getLock(caseviewId, bypassLockCache), isUpdate, userId);
+        }
+    }
+
+    private String getLockUserId(String xExternalUser) {
+        return requestSecurityContext.getLockUserId(xExternalUser);
+    }
+
+    /**
+     * Checks the BPS lock of a case against the current user.
+     *
+     * @param caseviewId      the id of the case being accessed.
+     * @param bpsLockResponse the lock returned by BPS, null when BPS returned no lock for the case.
+     * @param isUpdate        when true the case must be locked by the current user.
+     * @param userId          the lock user id of the current user.
+     */
+    private static void verifyLock(String caseviewId, BpsLockResponse bpsLockResponse, boolean isUpdate, String userId) {
+        String lockBusinessKey = bpsLockResponse != null ? bpsLockResponse.getBusinessKey() : null;
+        String lockUserId = bpsLockResponse != null ? bpsLockResponse.getUserId() : null;
+        if (lockBusinessKey != null && !Objects.equals(caseviewId, lockBusinessKey)) {
+            throw new ResourceUnknownException(ErrorCode.INVALID_LOCKED_RESOURCE,
+                    String.format("Unexpected resource from BPS. Expecting lock status for caseViewId=[%s], but received [%s] instead", // NOI18N
+                            caseviewId, lockBusinessKey));
+        }
+        if (isUpdate && lockUserId == null) {
+            throw new ResourceLockedException(
+                    String.format("Resource [%s] is not locked by current user", caseviewId), // NOI18N
+                    ErrorCode.NOT_LOCKED, ResponseStatus.NOT_LOCKED_ROW_ERROR);
+        }
+        if (lockUserId != null && !Objects.equals(lockUserId, userId)) {
+            throw new ResourceLockedException(
+                    String.format("Resource [%s] is being locked by other user", lockBusinessKey), // NOI18N
+                    lockUserId, bpsLockResponse.getTimestamp());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.ChannelsUtil;
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsLockResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsTotalCountResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewBpsResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewListBpsResponse;
+import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
+import com.experian.eda.casemanagement.exception.ResourceLockedException;
+import com.experian.eda.casemanagement.generated.model.ActionType;
+import com.experian.eda.casemanagement.generated.model.CaseViewListModel;
+import com.experian.eda.casemanagement.generated.model.CaseViewListResponse;
+import com.experian.eda.casemanagement.generated.model.CaseViewModel;
+import com.experian.eda.casemanagement.generated.model.CaseViewResponse;
+import com.experian.eda.casemanagement.service.mapper.caseviews.CaseViewMapper;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CaseviewsServiceTest {
+    private static final String SERVICE_ID = "service"; // NOI18N
+    private static final String BUSINESS_KEY = "appId"; // NOI18N
+    private static final String USER_ID = "user"; // NOI18N
+
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private CaseViewMapper caseViewMapper;
+    @Mock
+    private LockStatusCache lockStatusCache;
+    @Mock
+    private SearchCountCache searchCountCache;
+    @Mock
+    private CoalescingBpsReads coalescingBpsReads;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private CaseviewsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CaseviewsService(bpsClient, caseViewMapper, lockStatusCache, searchCountCache, coalescingBpsReads,
+                requestSecurityContext, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "parallelLockCheck", true); // NOI18N
+        ReflectionTestUtils.setField(service, "batchPatchParallelism", 2); // NOI18N
+        ReflectionTestUtils.setField(service, "searchPipelineParallelism", 2); // NOI18N
+        ReflectionTestUtils.setField(service, "lockCheckParallelism", 1); // NOI18N
+        service.initExecutors();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdownExecutors();
+    }
+
+    @Test
+    void batchPatchChecksAllLocksOnceAndOnlyPatchesTheCasesLockedByTheCaller() {
+        when(requestSecurityContext.getLockUserId(null)).thenReturn(USER_ID);
+        Map<String, BpsLockResponse> lockMap = new HashMap<>();
+        lockMap.put("c1", lock("c1", USER_ID)); // NOI18N
+        lockMap.put("c2", lock("c2", "other")); // NOI18N
+        when(lockStatusCache.getLockStatus(any(), eq(true))).thenReturn(lockMap);
+        CaseViewBpsResponse bpsResponse = mock(CaseViewBpsResponse.class);
+        when(bpsResponse.getData()).thenReturn(Collections.singletonMap(BUSINESS_KEY, "c1")); // NOI18N
+        when(bpsClient.executeUpdateService(eq(SERVICE_ID), anyBoolean(), anyMap(), eq(Boolean.TRUE), isNull()))
+                .thenReturn(bpsResponse);
+
+        Map<String, Map<String, Object>> patches = new LinkedHashMap<>();
+        patches.put("c1", Collections.singletonMap("amount", 1)); // NOI18N
+        patches.put("c2", Collections.singletonMap("amount", 2)); // NOI18N
+        patches.put("c3", Collections.singletonMap("amount", 3)); // NOI18N
+        List<CaseviewsService.PatchCaseResult> results = service.runPatchCases(SERVICE_ID, BUSINESS_KEY, false, patches,
+                ChannelsUtil.FORMAT_FLAT, externalUser());
+
+        assertEquals(3, results.size());
+        assertEquals("c1", results.get(0).getCaseviewId()); // NOI18N
+        assertTrue(results.get(0).isPatched());
+        // Locked by another user
+        assertTrue(results.get(1).getFailure() instanceof ResourceLockedException);
+        // Not locked at all
+        assertTrue(results.get(2).getFailure() instanceof ResourceLockedException);
+        verify(lockStatusCache, times(1)).getLockStatus(patches.keySet(), true);
+        verify(bpsClient, times(1)).executeUpdateService(any(), anyBoolean(), anyMap(), anyBoolean(), any());
+        verify(lockStatusCache).evict("c1"); // NOI18N
+        verify(lockStatusCache, never()).evict("c2"); // NOI18N
+    }
+
+    @Test
+    void batchPatchReportsTheFailureOfOneCaseWithoutFailingTheOthers() {
+        when(requestSecurityContext.getLockUserId(null)).thenReturn(USER_ID);
+        Map<String, BpsLockResponse> lockMap = new HashMap<>();
+        lockMap.put("c1", lock("c1", USER_ID)); // NOI18N
+        lockMap.put("c2", lock("c2", USER_ID)); // NOI18N
+        when(lockStatusCache.getLockStatus(any(), eq(true))).thenReturn(lockMap);
+        CaseViewBpsResponse bpsResponse = mock(CaseViewBpsResponse.class);
+        when(bpsResponse.getData()).thenReturn(Collections.singletonMap(BUSINESS_KEY, "c1")); // NOI18N
+        IllegalStateException failure = new IllegalStateException("BPS down"); // NOI18N
+        when(bpsClient.executeUpdateService(eq(SERVICE_ID), anyBoolean(), anyMap(), eq(Boolean.TRUE), isNull()))
+                .thenAnswer(invocation -> {
+                    Map<?, ?> bpsData = invocation.getArgument(2);
+                    if ("c2".equals(bpsData.get(BUSINESS_KEY))) { // NOI18N
+                        throw failure;
+                    }
+                    return bpsResponse;
+                });
+
+        Map<String, Map<String, Object>> patches = new LinkedHashMap<>();
+        patches.put("c1", Collections.emptyMap()); // NOI18N
+        patches.put("c2", Collections.emptyMap()); // NOI18N
+        List<CaseviewsService.PatchCaseResult> results = service.runPatchCases(SERVICE_ID, BUSINESS_KEY, false, patches,
+                ChannelsUtil.FORMAT_FLAT, externalUser());
+
+        assertTrue(results.get(0).isPatched());
+        assertEquals(failure, results.get(1).getFailure());
+        verify(lockStatusCache).evict("c2"); // NOI18N
+    }
+
+    @Test
+    void batchPatchRejectsAnUnknownFormatBeforeCallingBps() {
+        assertThrows(ResourceBadRequestException.class, () -> service.runPatchCases(SERVICE_ID, BUSINESS_KEY, false,
+                Collections.singletonMap("c1", Collections.emptyMap()), "unknown", externalUser())); // NOI18N
+        verify(lockStatusCache, never()).getLockStatus(any(), anyBoolean());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchPipelineMapsEachCaseOnceAndCombinesOnThePipelineExecutor() {
+        Map<String, Object> criteria = Collections.singletonMap("status", "open"); // NOI18N
+        Map<String, Object> first = Collections.singletonMap(BUSINESS_KEY, "c1"); // NOI18N
+        Map<String, Object> second = Collections.singletonMap(BUSINESS_KEY, "c2"); // NOI18N
+        CaseViewListBpsResponse searchResponse = mock(CaseViewListBpsResponse.class);
+        when(searchResponse.getData()).thenReturn(Arrays.asList(first, second));
+        RestResponse<CaseViewListBpsResponse> restResponse = mock(RestResponse.class);
+        when(restResponse.body()).thenReturn(searchResponse);
+        when(coalescingBpsReads.search(SERVICE_ID, ChannelsUtil.FORMAT_FLAT, criteria, true, 1, 2))
+                .thenReturn(CompletableFuture.completedFuture(restResponse));
+        BpsTotalCountResponse countResponse = mock(BpsTotalCountResponse.class);
+        when(countResponse.getTotalCount()).thenReturn(5L);
+        when(searchCountCache.getTotalCount(any(), any())).thenReturn(CompletableFuture.completedFuture(countResponse));
+        BpsLockResponse lock = mock(BpsLockResponse.class);
+        when(lockStatusCache.getLockStatus(new HashSet<>(Arrays.asList("c1", "c2")), false)) // NOI18N
+                .thenReturn(Collections.singletonMap("c1", lock)); // NOI18N
+        CaseViewModel firstModel = caseViewModel("c1"); // NOI18N
+        CaseViewModel secondModel = caseViewModel("c2"); // NOI18N
+        when(caseViewMapper.toCaseViewModelStrongTyped(first, "c1")).thenReturn(firstModel); // NOI18N
+        when(caseViewMapper.toCaseViewModelStrongTyped(second, "c2")).thenReturn(secondModel); // NOI18N
+        CaseViewListModel firstListModel = mock(CaseViewListModel.class);
+        CaseViewListModel secondListModel = mock(CaseViewListModel.class);
+        when(caseViewMapper.toCaseViewModelWithLock(lock, firstModel)).thenReturn(firstListModel);
+        when(caseViewMapper.toCaseViewModelWithLock(null, secondModel)).thenReturn(secondListModel);
+        CaseViewListResponse response = mock(CaseViewListResponse.class);
+        AtomicReference<String> combinedOn = new AtomicReference<>();
+        when(caseViewMapper.toCaseViewListResponse(Arrays.asList(firstListModel, secondListModel), 2, 5L, 1, 2, 3L))
+                .thenAnswer(invocation -> {
+                    combinedOn.set(Thread.currentThread().getName());
+                    return response;
+                });
+
+        assertSame(response, service.runGetMultipleCasesSearchV2(SERVICE_ID, BUSINESS_KEY, ChannelsUtil.FORMAT_FLAT,
+                Arrays.asList(ActionType.SEARCH.toString(), ActionType.COUNT.toString()), criteria, 1, 2));
+        assertTrue(combinedOn.get().startsWith("search-pipeline-"), combinedOn.get()); // NOI18N
+        verify(caseViewMapper, times(1)).toCaseViewModelStrongTyped(first, "c1"); // NOI18N
+    }
+
+    @Test
+    void singleCaseReadMapsOnlyTheElementOfTheRequestedCase() {
+        Map<String, Object> other = Collections.singletonMap(BUSINESS_KEY, "c2"); // NOI18N
+        Map<String, Object> requested = Collections.singletonMap(BUSINESS_KEY, "c1"); // NOI18N
+        CaseViewListBpsResponse searchResponse = mock(CaseViewListBpsResponse.class);
+        when(searchResponse.getData()).thenReturn(Arrays.asList(other, requested));
+        when(bpsClient.executeSearchService(SERVICE_ID, Collections.singletonMap(BUSINESS_KEY, "c1"), Boolean.TRUE, null)) // NOI18N
+                .thenReturn(searchResponse);
+        CaseViewModel model = mock(CaseViewModel.class);
+        when(caseViewMapper.toCaseViewModelStrongTyped(requested, "c1")).thenReturn(model); // NOI18N
+        CaseViewResponse response = mock(CaseViewResponse.class);
+        when(caseViewMapper.toCaseViewResponse(model)).thenReturn(response);
+
+        // The requested case is not the first element BPS returned
+        assertSame(response, service.runGetSingleCaseSearch(SERVICE_ID, BUSINESS_KEY, false, "c1", // NOI18N
+                ChannelsUtil.FORMAT_FLAT, null));
+        verify(caseViewMapper, never()).toCaseViewModelStrongTyped(eq(other), any());
+    }
+
+    @Test
+    void singleCaseReadIsEmptyWhenNoElementIsTheRequestedCase() {
+        CaseViewListBpsResponse searchResponse = mock(CaseViewListBpsResponse.class);
+        when(searchResponse.getData()).thenReturn(Collections.singletonList(Collections.singletonMap(BUSINESS_KEY, "c2"))); // NOI18N
+        when(bpsClient.executeSearchService(SERVICE_ID, Collections.singletonMap(BUSINESS_KEY, "c1"), Boolean.TRUE, null)) // NOI18N
+                .thenReturn(searchResponse);
+        CaseViewResponse empty = mock(CaseViewResponse.class);
+        when(caseViewMapper.toCaseViewResponse(null)).thenReturn(empty);
+
+        assertSame(empty, service.runGetSingleCaseSearch(SERVICE_ID, BUSINESS_KEY, false, "c1", // NOI18N
+                ChannelsUtil.FORMAT_FLAT, null));
+        verify(caseViewMapper, never()).toCaseViewModelStrongTyped(anyMap(), any());
+    }
+
+    @Test
+    void singleCaseReadChecksTheLockOnItsOwnExecutor() {
+        when(requestSecurityContext.getLockUserId(null)).thenReturn(USER_ID);
+        AtomicReference<String> checkedOn = new AtomicReference<>();
+        when(lockStatusCache.getLock("c1", false)).thenAnswer(invocation -> { // NOI18N
+            checkedOn.set(Thread.currentThread().getName());
+            return lock("c1", "other"); // NOI18N
+        });
+        CaseViewListBpsResponse searchResponse = mock(CaseViewListBpsResponse.class);
+        when(bpsClient.executeSearchService(SERVICE_ID, Collections.singletonMap(BUSINESS_KEY, "c1"), Boolean.TRUE, null)) // NOI18N
+                .thenReturn(searchResponse);
+
+        // The case fetched in parallel is not returned, the case is locked by another user
+        assertThrows(ResourceLockedException.class, () -> service.runGetSingleCaseSearch(SERVICE_ID, BUSINESS_KEY, true,
+                "c1", ChannelsUtil.FORMAT_FLAT, null)); // NOI18N
+        assertTrue(checkedOn.get().startsWith("single-case-lock-"), checkedOn.get()); // NOI18N
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aCursorPageTakesTheTotalCountFromTheCountCacheAndKeepsThePageSizeOfTheRequest() {
+        Map<String, Object> criteria = Collections.singletonMap("status", "open"); // NOI18N
+        CaseViewListBpsResponse searchResponse = mock(CaseViewListBpsResponse.class);
+        RestResponse<CaseViewListBpsResponse> restResponse = mock(RestResponse.class);
+        when(restResponse.body()).thenReturn(searchResponse);
+        when(coalescingBpsReads.search(SERVICE_ID, ChannelsUtil.FORMAT_FLAT, criteria, true, 3, 2))
+                .thenReturn(CompletableFuture.completedFuture(restResponse));
+        String criteriaHash = SearchCursor.criteriaHash(SERVICE_ID, ChannelsUtil.FORMAT_FLAT, criteria);
+        BpsTotalCountResponse countResponse = mock(BpsTotalCountResponse.class);
+        when(countResponse.getTotalCount()).thenReturn(5L);
+        when(searchCountCache.getTotalCount(eq(criteriaHash), any())).thenReturn(CompletableFuture.completedFuture(countResponse));
+        CaseViewListResponse response = mock(CaseViewListResponse.class);
+        when(caseViewMapper.toCaseViewListResponse(Collections.emptyList(), 0, 5L, 3, 2, 3L)).thenReturn(response);
+        String cursor = SearchCursor.of(criteriaHash, 3, 2).encode();
+        List<String> actions = Arrays.asList(ActionType.SEARCH.toString(), ActionType.COUNT.toString());
+
+        CaseviewsService.CaseViewListPage page = service.runGetMultipleCasesSearchV2Page(SERVICE_ID, BUSINESS_KEY,
+                ChannelsUtil.FORMAT_FLAT, actions, criteria, cursor, 1, 2);
+
+        assertSame(response, page.getResponse());
+        // A cursor issued for another page size is rejected rather than applied
+        assertThrows(ResourceBadRequestException.class, () -> service.runGetMultipleCasesSearchV2Page(SERVICE_ID,
+                BUSINESS_KEY, ChannelsUtil.FORMAT_FLAT, actions, criteria, cursor, 1, 1000));
+    }
+
+    private static CaseViewModel caseViewModel(String caseviewId) {
+        CaseViewModel caseViewModel = mock(CaseViewModel.class);
+        when(caseViewModel.getCaseviewId()).thenReturn(caseviewId);
+        return caseViewModel;
+    }
+
+    private static BpsLockResponse lock(String businessKey, String userId) {
+        BpsLockResponse lock = mock(BpsLockResponse.class);
+        when(lock.getBusinessKey()).thenReturn(businessKey);
+        when(lock.getUserId()).thenReturn(userId);
+        return lock;
+    }
+
+    private static CaseviewsService.ExternalUserConfigDto externalUser() {
+        return new CaseviewsService.ExternalUserConfigDto(Optional.empty(), null);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.saas.service.wrapper.logging.ExpLogger;
+import io.micrometer.core.instrument.Metrics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Pre-compiled table of the converters used by {@link ServicesUtil#toStrongTypedCharacteristics(Object, String)}.
+ * The table is built once at startup, is immutable afterwards and is safe to share between threads.
+ */
+final class CharacteristicValueConverters {
+    private static final ExpLogger LOGGER = new ExpLogger(CharacteristicValueConverters.class);
+
+    static final String NUMERIC_INTEGER = "NumericInteger"; // NOI18N
+    static final String NUMERIC = "Numeric"; // NOI18N
+    static final String BIG_DECIMAL = "BigDecimal"; // NOI18N
+    static final String BOOLEAN = "Boolean"; // NOI18N
+    static final String DATE = "Date"; // NOI18N
+
+    private static final String FAILURE_METRIC_NAME = "e1.ServicesUtil.characteristicConversionFailures"; // NOI18N
+    private static final ZoneId UTC = ZoneId.of("Z"); // NOI18N
+    private static final int DATE_CACHE_MAX_SIZE = 1024;
+    private static final long FAILURE_LOG_INTERVAL_MILLIS = 60_000L;
+
+    private final DateTimeFormatter bpsDateFormatter;
+    private final DateTimeFormatter cmDateFormatter;
+    private final Map<String, Function<Object, Object>> converters;
+    private final Map<String, String> dateCache = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failureCounts = new ConcurrentHashMap<>();
+    private final AtomicLong lastFailureLogMillis = new AtomicLong();
+
+    CharacteristicValueConverters(String bpsInternalDateFormat, DateTimeFormatter cmDateFormatter) {
+        this.bpsDateFormatter = DateTimeFormatter.ofPattern(bpsInternalDateFormat);
+        this.cmDateFormatter = cmDateFormatter;
+
+        Map<String, Function<Object, Object>> table = new HashMap<>();
+        table.put(NUMERIC_INTEGER, CharacteristicValueConverters::toBigInteger);
+        table.put(NUMERIC, CharacteristicValueConverters::toBigDecimal);
+        table.put(BIG_DECIMAL, CharacteristicValueConverters::toBigDecimal);
+        table.put(BOOLEAN, CharacteristicValueConverters::toBoolean);
+        table.put(DATE, this::toCmDate);
+        // "String", "Any" and unknown data types are returned as received from BPS
+        this.converters = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Convert the value using the converter registered for the data type. When the conversion fails the BPS value is
+     * returned unchanged and the failure is counted rather than logged one by one.
+     *
+     * @param value    the BPS characteristic value, can be null
+     * @param dataType the BPS data type of the characteristic
+     * @return the strong typed value, or the original value when there is no converter or it cannot be converted
+     */
+    Object convert(Object value, String dataType) {
+        if (null == value || null == dataType) {
+            return value;
+        }
+        Function<Object, Object> converter = converters.get(dataType);
+        if (null == converter) {
+            return value;
+        }
+        try {
+            return converter.apply(value);
+        } catch (RuntimeException ex) {
+            recordFailure(value, dataType, ex);
+            return value;
+        }
+    }
+
+    /**
+     * @return a snapshot of the number of failed conversions per data type since startup
+     */
+    Map<String, Long> getFailureCounts() {
+        Map<String, Long> snapshot = new HashMap<>();
+        failureCounts.forEach((dataType, count) -> snapshot.put(dataType, count.sum()));
+        return snapshot;
+    }
+
+    private static Object toBigInteger(Object value) {
+        if (value instanceof BigInteger) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigInteger.valueOf(((Number) value).longValue());
+        }
+        return new BigInteger(String.valueOf(value));
+    }
+
+    private static Object toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        return new BigDecimal(String.valueOf(value));
+    }
+
+    private static Object toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return value;
+        }
+        return Boolean.valueOf(String.valueOf(value));
+    }
+
+    private Object toCmDate(Object value) {
+        String bpsDate = String.valueOf(value);
+        String cmDate = dateCache.get(bpsDate);
+        if (null == cmDate) {
+            cmDate = cmDateFormatter.format(LocalDate.parse(bpsDate, bpsDateFormatter).atStartOfDay(UTC));
+            if (dateCache.size() >= DATE_CACHE_MAX_SIZE) {
+                // Dates repeat heavily within a case history, a cheap reset keeps the cache bounded
+                dateCache.clear();
+            }
+            dateCache.put(bpsDate, cmDate);
+        }
+        return cmDate;
+    }
+
+    private void recordFailure(Object value, String dataType, RuntimeException ex) {
+        failureCounts.computeIfAbsent(dataType, key -> new LongAdder()).increment();
+        Metrics.counter(FAILURE_METRIC_NAME, "dataType", dataType).increment(); // NOI18N
+
+        long now = System.currentTimeMillis();
+        long last = lastFailureLogMillis.get();
+        if (now - last >= FAILURE_LOG_INTERVAL_MILLIS && lastFailureLogMillis.compareAndSet(last, now)) {
+            LOGGER.warn("Unable to convert value [{}] to data type [{}] due to {}. Failed conversions so far: {}", // NOI18N
+                    value, dataType, ex.getLocalizedMessage(), getFailureCounts());
+        } else {
+            LOGGER.debug("Unable to convert value [{}] to data type [{}]", value, dataType, ex); // NOI18N
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CharacteristicValueConvertersTest {
+    private final CharacteristicValueConverters converters = new CharacteristicValueConverters("yyyy-MM-dd", // NOI18N
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX")); // NOI18N
+
+    @Test
+    void convertsNumericIntegerToBigInteger() {
+        assertEquals(BigInteger.valueOf(42L), converters.convert(42, CharacteristicValueConverters.NUMERIC_INTEGER));
+        assertEquals(BigInteger.valueOf(42L), converters.convert("42", CharacteristicValueConverters.NUMERIC_INTEGER)); // NOI18N
+    }
+
+    @Test
+    void convertsNumericAndBigDecimalKeepingTheScale() {
+        assertEquals(new BigDecimal("1.50"), converters.convert("1.50", CharacteristicValueConverters.NUMERIC)); // NOI18N
+        assertEquals(new BigDecimal("1.50"), converters.convert("1.50", CharacteristicValueConverters.BIG_DECIMAL)); // NOI18N
+        assertEquals(BigDecimal.valueOf(7L), converters.convert(7L, CharacteristicValueConverters.NUMERIC));
+    }
+
+    @Test
+    void convertsBoolean() {
+        assertEquals(Boolean.TRUE, converters.convert("true", CharacteristicValueConverters.BOOLEAN)); // NOI18N
+        assertEquals(Boolean.FALSE, converters.convert("no", CharacteristicValueConverters.BOOLEAN)); // NOI18N
+    }
+
+    @Test
+    void convertsDateToTheCaseManagementFormat() {
+        assertEquals("2022-03-04T00:00:00Z", converters.convert("2022-03-04", CharacteristicValueConverters.DATE)); // NOI18N
+        // Served from the date cache the second time
+        assertEquals("2022-03-04T00:00:00Z", converters.convert("2022-03-04", CharacteristicValueConverters.DATE)); // NOI18N
+    }
+
+    @Test
+    void returnsValuesWithoutConverterUnchanged() {
+        Object value = new Object();
+        assertSame(value, converters.convert(value, "String")); // NOI18N
+        assertSame(value, converters.convert(value, null));
+        assertNull(converters.convert(null, CharacteristicValueConverters.NUMERIC));
+    }
+
+    @Test
+    void returnsTheBpsValueAndCountsTheFailureWhenTheConversionFails() {
+        assertEquals("abc", converters.convert("abc", CharacteristicValueConverters.NUMERIC)); // NOI18N
+        assertEquals("abc", converters.convert("abc", CharacteristicValueConverters.NUMERIC)); // NOI18N
+        assertEquals(2L, converters.getFailureCounts().get(CharacteristicValueConverters.NUMERIC));
+    }
+}
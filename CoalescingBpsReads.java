@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsGetNotesDataResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsHistoryDataResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewListBpsResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.document.DocumentDataBpsResponse;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer in front of the asynchronous BPS reads: concurrent callers making the same read share one BPS
+ * call and get the same future. Reads are only shared between callers with the same user, external user and
+ * permissions, unless configured to be shared across users for deployments where BPS returns the same data to every
+ * user. Callers must not modify the shared response.
+ * <p>
+ * Valid values, security policies and data definitions are not read through this class, their snapshot holders
+ * already share a single load between concurrent callers.
+ */
+@Component
+@RequiredArgsConstructor
+public class CoalescingBpsReads {
+    private static final String CALLS_METRIC_NAME = "e1.CoalescingBpsReads.calls"; // NOI18N
+    private static final String KEY_SEPARATOR = "|"; // NOI18N
+
+    private final BpsClient bpsClient;
+    private final RequestSecurityContext requestSecurityContext;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.bps-coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${case-management.bps-coalescing.share-across-users:false}")
+    private boolean shareAcrossUsers;
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param caseviewId application id
+     * @return the future of the BPS history of the case
+     */
+    public CompletableFuture<RestResponse<BpsHistoryDataResponse>> getHistory(String caseviewId) {
+        return coalesce("history", caseviewId, () -> bpsClient.executeGetHistoryAsync(caseviewId)); // NOI18N
+    }
+
+    /**
+     * @param caseviewId application id
+     * @return the future of the BPS notes of the case
+     */
+    public CompletableFuture<RestResponse<BpsGetNotesDataResponse>> getNotes(String caseviewId) {
+        return coalesce("notes", caseviewId, () -> bpsClient.executeGetNotesAsync(caseviewId)); // NOI18N
+    }
+
+    /**
+     * @param caseviewId   application id
+     * @param documentType the document type, empty for all documents
+     * @return the future of the BPS documents of the case
+     */
+    public CompletableFuture<RestResponse<DocumentDataBpsResponse>> getDocuments(String caseviewId, String documentType) {
+        return coalesce("documents", caseviewId + KEY_SEPARATOR + documentType, // NOI18N
+                () -> bpsClient.executeGetDocumentAsync(caseviewId, documentType));
+    }
+
+    /**
+     * @param serviceId          the BPS service id
+     * @param format             format to indicate is flat or hierarchical json
+     * @param searchCriteriaData the search criteria
+     * @param isFlat             true when the format is flat
+     * @param page               the page number
+     * @param pageSize           the page size
+     * @return the future of the BPS search result
+     */
+    public CompletableFuture<RestResponse<CaseViewListBpsResponse>> search(String serviceId, String format,
+                                                                           Map<String, Object> searchCriteriaData,
+                                                                           boolean isFlat, Integer page, Integer pageSize) {
+        String key = SearchCursor.criteriaHash(serviceId, format, searchCriteriaData) + KEY_SEPARATOR + page + KEY_SEPARATOR + pageSize;
+        return coalesce("search", key, // NOI18N
+                () -> bpsClient.executeSearchServiceAsync(serviceId, searchCriteriaData, isFlat, page, pageSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesce(String read, String arguments, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        // The caller is resolved on the calling thread, the request thread for all callers of this class
+        String key = read + KEY_SEPARATOR + (shareAcrossUsers ? "" : requestSecurityContext.getCallerKey()) + KEY_SEPARATOR + arguments;
+        boolean[] started = {false};
+        CompletableFuture<T> future = (CompletableFuture<T>) inFlight.computeIfAbsent(key, k -> {
+            started[0] = true;
+            return call.get();
+        });
+        meterRegistry.counter(CALLS_METRIC_NAME, "read", read, "result", started[0] ? "started" : "coalesced").increment(); // NOI18N
+        if (started[0]) {
+            future.whenComplete((response, ex) -> inFlight.remove(key, future));
+        }
+        return future;
+    }
+}
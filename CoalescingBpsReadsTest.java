@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsHistoryDataResponse;
+import com.experian.eda.casemanagement.channel.bps.v0.model.CaseViewListBpsResponse;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingBpsReadsTest {
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private CoalescingBpsReads reads;
+
+    @BeforeEach
+    void setUp() {
+        reads = new CoalescingBpsReads(bpsClient, requestSecurityContext, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(reads, "enabled", true); // NOI18N
+    }
+
+    @Test
+    void concurrentReadsOfTheSameCallerShareOneCall() {
+        when(requestSecurityContext.getCallerKey()).thenReturn("ext/user1|10"); // NOI18N
+        when(bpsClient.executeGetHistoryAsync("c1")).thenAnswer(invocation -> new CompletableFuture<>()); // NOI18N
+
+        CompletableFuture<RestResponse<BpsHistoryDataResponse>> first = reads.getHistory("c1"); // NOI18N
+        CompletableFuture<RestResponse<BpsHistoryDataResponse>> second = reads.getHistory("c1"); // NOI18N
+
+        assertSame(first, second);
+        verify(bpsClient, times(1)).executeGetHistoryAsync("c1"); // NOI18N
+    }
+
+    @Test
+    void readsOfAnotherExternalUserOrPermissionScopeAreNotShared() {
+        // The same user on behalf of another external user, then with other permissions
+        when(requestSecurityContext.getCallerKey()).thenReturn("ext/user1|10", "other/user1|10", "ext/user1|11"); // NOI18N
+        when(bpsClient.executeGetHistoryAsync("c1")).thenAnswer(invocation -> new CompletableFuture<>()); // NOI18N
+
+        CompletableFuture<RestResponse<BpsHistoryDataResponse>> first = reads.getHistory("c1"); // NOI18N
+        assertNotSame(first, reads.getHistory("c1")); // NOI18N
+        assertNotSame(first, reads.getHistory("c1")); // NOI18N
+
+        verify(bpsClient, times(3)).executeGetHistoryAsync("c1"); // NOI18N
+    }
+
+    @Test
+    void searchesWithCriteriaThatOnlyRenderTheSameAreNotShared() {
+        when(requestSecurityContext.getCallerKey()).thenReturn("ext/user1|10"); // NOI18N
+        Map<String, Object> joined = Collections.singletonMap("a", "1,b=2"); // NOI18N
+        Map<String, Object> split = new LinkedHashMap<>();
+        split.put("a", "1"); // NOI18N
+        split.put("b", "2"); // NOI18N
+        when(bpsClient.executeSearchServiceAsync(eq("service"), any(), eq(true), eq(1), eq(10))) // NOI18N
+                .thenAnswer(invocation -> new CompletableFuture<>());
+
+        CompletableFuture<RestResponse<CaseViewListBpsResponse>> first = reads.search("service", "flat", joined, true, 1, 10); // NOI18N
+
+        assertNotSame(first, reads.search("service", "flat", split, true, 1, 10)); // NOI18N
+        verify(bpsClient, times(1)).executeSearchServiceAsync("service", joined, true, 1, 10); // NOI18N
+        verify(bpsClient, times(1)).executeSearchServiceAsync("service", split, true, 1, 10); // NOI18N
+    }
+}
@@ -17,17 +17,37 @@ import com.experian.eda.casemanagement.generated.model.AttachmentMeta;
 import com.experian.eda.casemanagement.generated.model.CommentWithAttachmentsData;
 import com.experian.eda.casemanagement.generated.model.CreatedCommentData;
 import com.experian.eda.casemanagement.generated.model.InvalidAttachmentMeta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.CustomLog;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 import static com.experian.eda.casemanagement.channel.antivirus.v0.AVScanResult.ScanResult.SUCCESS;
@@ -55,8 +75,49 @@ public class CommentActivitiesService {
     private static final String FILE_VIRUS_CHECK_UNAVAILABLE_DESCRIPTION = "The file virus check is not available."; //NOI18N
     private static final String NO_ATTACH_PERMISSION_DESCRIPTION = "The file not persisted due to user does not have add attachment permission."; //NOI18N
 
+    private static final String SCAN_METRIC_PREFIX = "e1.CommentActivitiesService.antivirusScan"; //NOI18N
+
     private final BpsClient bpsClient;
     private final AntivirusClient antivirusClient;
+    private final MeterRegistry meterRegistry;
+    private final RequestSecurityContext requestSecurityContext;
+
+    @Value("${case-management.antivirus.scan-parallelism:4}")
+    private int scanParallelism;
+
+    @Value("${case-management.antivirus.scan-queue-capacity:100}")
+    private int scanQueueCapacity;
+
+    @Value("${case-management.antivirus.scan-timeout-millis:30000}")
+    private long scanTimeoutMillis;
+
+    private ThreadPoolExecutor scanExecutor;
+    /** The scan executor, running each scan with the security context of the request that submitted it. */
+    private ExecutorService scanExecutorService;
+    private Timer scanTimer;
+    private Counter scanTimeoutCounter;
+    private Counter scanRejectionCounter;
+    /** The time source of the scan timeout. */
+    private LongSupplier nanoTime = System::nanoTime;
+
+    @PostConstruct
+    void initScanExecutor() {
+        // When the queue is full the scan is rejected and reported as unavailable, which bounds the work queued per
+        // pod without ever running a scan on the request thread
+        scanExecutor = new ThreadPoolExecutor(scanParallelism, scanParallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(scanQueueCapacity), new CustomizableThreadFactory("antivirus-scan-"), //NOI18N
+                new ThreadPoolExecutor.AbortPolicy());
+        scanExecutorService = new DelegatingSecurityContextExecutorService(scanExecutor);
+        meterRegistry.gauge(SCAN_METRIC_PREFIX + ".queueDepth", scanExecutor, executor -> executor.getQueue().size()); //NOI18N
+        scanTimer = meterRegistry.timer(SCAN_METRIC_PREFIX + ".latency"); //NOI18N
+        scanTimeoutCounter = meterRegistry.counter(SCAN_METRIC_PREFIX + ".timeouts"); //NOI18N
+        scanRejectionCounter = meterRegistry.counter(SCAN_METRIC_PREFIX + ".rejections"); //NOI18N
+    }
+
+    @PreDestroy
+    void shutdownScanExecutor() {
+        scanExecutorService.shutdownNow();
+    }
 
     /**
      * Return an instance of CreatedCommentData with data and attachments details from BPS. The data are passed to the
@@ -101,21 +162,96 @@ public class CommentActivitiesService {
      * @return an updated list of invalid attachments
      */
     private List<InvalidAttachmentMeta> getInvalidAttachmentFromVirusScan(List<FormDataBodyPart> attachments) {
+        // Start all the scans first, the results are then read in the order of the attachments
+        List<ScanTask> scans = new ArrayList<>(attachments.size());
+        for (FormDataBodyPart attachment : attachments) {
+            ScanTask scan = new ScanTask(attachment);
+            try {
+                scan.future = scanExecutorService.submit(scan);
+            } catch (RejectedExecutionException ex) {
+                scanRejectionCounter.increment();
+                LOGGER.warn("Virus scan of attachment {} rejected, the scan queue is full", //NOI18N
+                        attachment.getContentDisposition().getFileName());
+            }
+            scans.add(scan);
+        }
+
         List<InvalidAttachmentMeta> invalidAttachmentMetaList = new ArrayList<>();
         Iterator<FormDataBodyPart> attachIterator = attachments.iterator();
-        while (attachIterator.hasNext()) {
-            FormDataBodyPart attachment = attachIterator.next();
-            AVScanResult avScanResult = antivirusClient.scan(attachment);
-            AVScanResult.ScanResult scanResult = avScanResult.getScanResult();
-            if (scanResult != SUCCESS) {
-                invalidAttachmentMetaList.add(new InvalidAttachmentMeta(attachment.getContentDisposition().getFileName(),
-                        getInvalidCode(scanResult), getInvalidDescription(scanResult)));
-                attachIterator.remove();
+        int index = 0;
+        try {
+            while (attachIterator.hasNext()) {
+                FormDataBodyPart attachment = attachIterator.next();
+                String fileName = attachment.getContentDisposition().getFileName();
+                ScanTask scan = scans.get(index++);
+                if (scan.future == null) {
+                    invalidAttachmentMetaList.add(new InvalidAttachmentMeta(fileName,
+                            FILE_VIRUS_CHECK_UNAVAILABLE, FILE_VIRUS_CHECK_UNAVAILABLE_DESCRIPTION));
+                    attachIterator.remove();
+                    continue;
+                }
+                AVScanResult avScanResult = awaitScan(scan, fileName);
+                if (avScanResult == null) {
+                    invalidAttachmentMetaList.add(new InvalidAttachmentMeta(fileName,
+                            FILE_VIRUS_CHECK_INCOMPLETE, FILE_VIRUS_CHECK_INCOMPLETE_DESCRIPTION));
+                    attachIterator.remove();
+                    continue;
+                }
+                AVScanResult.ScanResult scanResult = avScanResult.getScanResult();
+                if (scanResult != SUCCESS) {
+                    invalidAttachmentMetaList.add(new InvalidAttachmentMeta(fileName,
+                            getInvalidCode(scanResult), getInvalidDescription(scanResult)));
+                    attachIterator.remove();
+                }
             }
+        } catch (RuntimeException ex) {
+            // The request fails, the scans still queued or running are of no use
+            scans.stream().filter(scan -> scan.future != null).forEach(scan -> scan.future.cancel(true));
+            throw ex;
         }
         return invalidAttachmentMetaList;
     }
 
+    /**
+     * Wait for the scan of an attachment. The scan may wait in the queue for up to the scan timeout, and once started
+     * has the scan timeout to complete.
+     *
+     * @param scan     the submitted scan
+     * @param fileName the attachment file name, for logging
+     * @return the scan result, or null when the scan did not complete in time
+     */
+    private AVScanResult awaitScan(ScanTask scan, String fileName) {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(scanTimeoutMillis);
+        try {
+            while (true) {
+                long startedNanos = scan.startedNanos;
+                long deadlineNanos = (startedNanos != ScanTask.NOT_STARTED ? startedNanos : scan.submittedNanos) + timeoutNanos;
+                long remainingNanos = deadlineNanos - nanoTime.getAsLong();
+                if (remainingNanos <= 0L) {
+                    scan.future.cancel(true);
+                    scanTimeoutCounter.increment();
+                    LOGGER.warn("Virus scan of attachment {} did not {} within {} ms", fileName, //NOI18N
+                            startedNanos != ScanTask.NOT_STARTED ? "complete" : "start", scanTimeoutMillis); //NOI18N
+                    return null;
+                }
+                try {
+                    return scan.future.get(remainingNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException ex) {
+                    // Check again, the scan may have started since and then has its own deadline
+                }
+            }
+        } catch (InterruptedException ex) {
+            scan.future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
     /**
      * Convert all attachments to invalid when there is no Add-Attachment permission
      * Clear all attachments from the request attachments list argument
@@ -125,7 +261,7 @@ public class CommentActivitiesService {
      */
     private List<InvalidAttachmentMeta> convertToInvalidAttachmentWhenNoPermission(List<FormDataBodyPart> attachments) {
         List<InvalidAttachmentMeta> invalidAttachmentMetaList = new ArrayList<>();
-        if (!CollectionUtils.isEmpty(attachments) && !SecurityUtil.hasPermissions(SecurityUtil.Permission.ADD_ATTACHMENT)) {
+        if (!CollectionUtils.isEmpty(attachments) && !requestSecurityContext.hasPermissions(SecurityUtil.Permission.ADD_ATTACHMENT)) {
             Iterator<FormDataBodyPart> attachIterator = attachments.iterator();
             while (attachIterator.hasNext()) {
                 FormDataBodyPart attachment = attachIterator.next();
@@ -220,12 +356,12 @@ public class CommentActivitiesService {
                 .collect(Collectors.toList());
     }
 
-    private static List<com.experian.eda.casemanagement.generated.model.AttachmentMeta> convertToV0Attachments(
+    private List<com.experian.eda.casemanagement.generated.model.AttachmentMeta> convertToV0Attachments(
             List<BpsAttachmentDataDto> validBpsAttachments) {
         if (Objects.isNull(validBpsAttachments)) {
             return new ArrayList<>();
         } else {
-            if (!validBpsAttachments.isEmpty() && !SecurityUtil.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT)) {
+            if (!validBpsAttachments.isEmpty() && !requestSecurityContext.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT)) {
                 LOGGER.debug("Valid attachment(s) exist but no permission to view, return empty attachment."); //NOI18N
                 return new ArrayList<>();
             }
@@ -256,4 +392,43 @@ public class CommentActivitiesService {
                 ? StringUtils.abbreviate(content, ServicesUtil.CONTENT_SIZE_MAX)
                 : content;
     }
+
+    /**
+     * The antivirus scan of one attachment, which records when it leaves the queue. The scan logs with the MDC of the
+     * request that submitted it.
+     */
+    private final class ScanTask implements Callable<AVScanResult> {
+        private static final long NOT_STARTED = Long.MIN_VALUE;
+
+        private final FormDataBodyPart attachment;
+        private final long submittedNanos = nanoTime.getAsLong();
+        private final Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        private volatile long startedNanos = NOT_STARTED;
+        /** The submitted scan, null when the executor rejected it. */
+        private Future<AVScanResult> future;
+
+        private ScanTask(FormDataBodyPart attachment) {
+            this.attachment = attachment;
+        }
+
+        @Override
+        public AVScanResult call() throws Exception {
+            startedNanos = nanoTime.getAsLong();
+            Map<String, String> previousMdcContext = MDC.getCopyOfContextMap();
+            setMdcContext(mdcContext);
+            try {
+                return scanTimer.recordCallable(() -> antivirusClient.scan(attachment));
+            } finally {
+                setMdcContext(previousMdcContext);
+            }
+        }
+
+        private void setMdcContext(Map<String, String> context) {
+            if (context == null) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(context);
+            }
+        }
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.antivirus.v0.AVScanResult;
+import com.experian.eda.casemanagement.channel.antivirus.v0.AntivirusClient;
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsPostNoteResponse;
+import com.experian.eda.casemanagement.common.util.SecurityUtil;
+import com.experian.eda.casemanagement.generated.model.InvalidAttachmentMeta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.MDC;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CommentActivitiesServiceTest {
+    private static final String CASEVIEW_ID = "c1"; // NOI18N
+
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private AntivirusClient antivirusClient;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private CommentActivitiesService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CommentActivitiesService(bpsClient, antivirusClient, new SimpleMeterRegistry(), requestSecurityContext);
+        lenient().when(requestSecurityContext.hasPermissions(SecurityUtil.Permission.ADD_ATTACHMENT)).thenReturn(true);
+        lenient().when(bpsClient.executePostNote(eq(CASEVIEW_ID), any(), anyList(), anyList(), any()))
+                .thenReturn(mock(BpsPostNoteResponse.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdownScanExecutor();
+    }
+
+    @Test
+    void timeSpentQueuedDoesNotCountAgainstTheScanTimeout() throws Exception {
+        configureScanExecutor(1, 10, 300L);
+        AtomicLong clock = new AtomicLong();
+        ReflectionTestUtils.setField(service, "nanoTime", (LongSupplier) clock::get); // NOI18N
+        FormDataBodyPart first = attachment("a.pdf"); // NOI18N
+        FormDataBodyPart queued = attachment("b.pdf"); // NOI18N
+        AVScanResult success = scanResult(AVScanResult.ScanResult.SUCCESS);
+        CountDownLatch queuedStarted = new CountDownLatch(1);
+        CountDownLatch releaseQueued = new CountDownLatch(1);
+        when(antivirusClient.scan(first)).thenAnswer(invocation -> {
+            clock.set(TimeUnit.MILLISECONDS.toNanos(200L));
+            return success;
+        });
+        when(antivirusClient.scan(queued)).thenAnswer(invocation -> {
+            queuedStarted.countDown();
+            releaseQueued.await(5L, TimeUnit.SECONDS);
+            return success;
+        });
+        // Read once the first scan is collected: the second scan has started after 200 ms in the queue, and is
+        // 400 ms past its submission when its result is awaited
+        when(queued.getContentDisposition().getFileName()).thenAnswer(invocation -> {
+            queuedStarted.await(5L, TimeUnit.SECONDS);
+            clock.set(TimeUnit.MILLISECONDS.toNanos(400L));
+            releaseQueued.countDown();
+            return "b.pdf"; // NOI18N
+        });
+        List<FormDataBodyPart> attachments = new ArrayList<>(Arrays.asList(first, queued));
+
+        service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments, null); // NOI18N
+
+        assertEquals(Arrays.asList(first, queued), attachments);
+        assertTrue(postedInvalidAttachments().isEmpty());
+    }
+
+    @Test
+    void aScanThatRunsPastTheTimeoutIsReportedIncompleteAndInterrupted() throws Exception {
+        configureScanExecutor(1, 10, 100L);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(antivirusClient.scan(any())).thenAnswer(invocation -> awaitInterrupt(interrupted));
+        List<FormDataBodyPart> attachments = attachments("a.pdf"); // NOI18N
+
+        service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments, null); // NOI18N
+
+        assertTrue(attachments.isEmpty());
+        assertEquals(Arrays.asList(InvalidAttachmentMeta.CodeEnum.FILE_VIRUS_CHECK_INCOMPLETE), codes(postedInvalidAttachments()));
+        assertTrue(interrupted.await(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aFullQueueRejectsTheScanInsteadOfRunningItOnTheRequestThread() throws Exception {
+        configureScanExecutor(1, 1, 5_000L);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> scanThreads = new ArrayList<>();
+        AVScanResult success = scanResult(AVScanResult.ScanResult.SUCCESS);
+        when(antivirusClient.scan(any())).thenAnswer(invocation -> {
+            synchronized (scanThreads) {
+                scanThreads.add(Thread.currentThread().getName());
+            }
+            release.await(5L, TimeUnit.SECONDS);
+            return success;
+        });
+        List<FormDataBodyPart> attachments = attachments("a.pdf", "b.pdf", "c.pdf"); // NOI18N
+        // The first scan holds the only thread until all three are submitted. The file name of the first attachment is
+        // only read once the results are collected, after the last submission.
+        when(attachments.get(0).getContentDisposition().getFileName()).thenAnswer(invocation -> {
+            release.countDown();
+            return "a.pdf"; // NOI18N
+        });
+
+        service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments, null); // NOI18N
+
+        List<InvalidAttachmentMeta> invalidAttachments = postedInvalidAttachments();
+        assertEquals(1, invalidAttachments.size());
+        assertEquals(InvalidAttachmentMeta.CodeEnum.FILE_VIRUS_CHECK_UNAVAILABLE, invalidAttachments.get(0).getCode());
+        assertEquals("c.pdf", invalidAttachments.get(0).getFileName()); // NOI18N
+        synchronized (scanThreads) {
+            assertEquals(2, scanThreads.size());
+            assertTrue(scanThreads.stream().allMatch(name -> name.startsWith("antivirus-scan-")), scanThreads.toString()); // NOI18N
+        }
+    }
+
+    @Test
+    void aFailedScanCancelsTheOtherScans() throws Exception {
+        configureScanExecutor(2, 10, 5_000L);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        FormDataBodyPart failing = attachment("a.pdf"); // NOI18N
+        FormDataBodyPart slow = attachment("b.pdf"); // NOI18N
+        when(antivirusClient.scan(failing)).thenThrow(new IllegalStateException("antivirus down")); // NOI18N
+        when(antivirusClient.scan(slow)).thenAnswer(invocation -> awaitInterrupt(interrupted));
+        List<FormDataBodyPart> attachments = new ArrayList<>(Arrays.asList(failing, slow));
+
+        assertThrows(IllegalStateException.class,
+                () -> service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments, null)); // NOI18N
+        assertTrue(interrupted.await(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void scansRunWithTheSecurityContextAndMdcOfTheRequest() throws Exception {
+        configureScanExecutor(1, 10, 5_000L);
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken("user1", null); // NOI18N
+        List<Object> seen = new ArrayList<>();
+        AVScanResult success = scanResult(AVScanResult.ScanResult.SUCCESS);
+        when(antivirusClient.scan(any())).thenAnswer(invocation -> {
+            seen.add(SecurityContextHolder.getContext().getAuthentication());
+            seen.add(MDC.get("requestId")); // NOI18N
+            return success;
+        });
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        MDC.put("requestId", "r1"); // NOI18N
+        try {
+            service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments("a.pdf"), null); // NOI18N
+        } finally {
+            SecurityContextHolder.clearContext();
+            MDC.remove("requestId"); // NOI18N
+        }
+
+        assertEquals(Arrays.asList(authentication, "r1"), seen); // NOI18N
+    }
+
+    @Test
+    void failedScansAreReportedAndRemoved() throws Exception {
+        configureScanExecutor(2, 10, 5_000L);
+        FormDataBodyPart clean = attachment("a.pdf"); // NOI18N
+        FormDataBodyPart infected = attachment("b.pdf"); // NOI18N
+        AVScanResult success = scanResult(AVScanResult.ScanResult.SUCCESS);
+        AVScanResult fail = scanResult(AVScanResult.ScanResult.FAIL);
+        when(antivirusClient.scan(clean)).thenReturn(success);
+        when(antivirusClient.scan(infected)).thenReturn(fail);
+        List<FormDataBodyPart> attachments = new ArrayList<>(Arrays.asList(clean, infected));
+
+        service.runPostCommentWithAttachmentsForCase(CASEVIEW_ID, "text", attachments, null); // NOI18N
+
+        assertEquals(Arrays.asList(clean), attachments);
+        assertEquals(Arrays.asList(InvalidAttachmentMeta.CodeEnum.FILE_FAILED_VIRUS_CHECK), codes(postedInvalidAttachments()));
+        assertFalse(attachments.contains(infected));
+    }
+
+    private void configureScanExecutor(int parallelism, int queueCapacity, long timeoutMillis) {
+        ReflectionTestUtils.setField(service, "scanParallelism", parallelism); // NOI18N
+        ReflectionTestUtils.setField(service, "scanQueueCapacity", queueCapacity); // NOI18N
+        ReflectionTestUtils.setField(service, "scanTimeoutMillis", timeoutMillis); // NOI18N
+        service.initScanExecutor();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InvalidAttachmentMeta> postedInvalidAttachments() {
+        ArgumentCaptor<List<InvalidAttachmentMeta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bpsClient).executePostNote(eq(CASEVIEW_ID), any(), anyList(), captor.capture(), any());
+        return captor.getValue();
+    }
+
+    /**
+     * Block the scan until it is cancelled, counting down the latch once interrupted.
+     */
+    private static AVScanResult awaitInterrupt(CountDownLatch interrupted) {
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException ex) {
+            interrupted.countDown();
+        }
+        return null;
+    }
+
+    private static List<InvalidAttachmentMeta.CodeEnum> codes(List<InvalidAttachmentMeta> invalidAttachments) {
+        return invalidAttachments.stream().map(InvalidAttachmentMeta::getCode).collect(Collectors.toList());
+    }
+
+    private static AVScanResult scanResult(AVScanResult.ScanResult result) {
+        AVScanResult scanResult = mock(AVScanResult.class);
+        lenient().when(scanResult.getScanResult()).thenReturn(result);
+        return scanResult;
+    }
+
+    private static List<FormDataBodyPart> attachments(String... fileNames) {
+        List<FormDataBodyPart> attachments = new ArrayList<>();
+        for (String fileName : fileNames) {
+            attachments.add(attachment(fileName));
+        }
+        return attachments;
+    }
+
+    static FormDataBodyPart attachment(String fileName) {
+        FormDataBodyPart attachment = mock(FormDataBodyPart.class);
+        FormDataContentDisposition contentDisposition = mock(FormDataContentDisposition.class);
+        lenient().when(contentDisposition.getFileName()).thenReturn(fileName);
+        lenient().when(attachment.getContentDisposition()).thenReturn(contentDisposition);
+        return attachment;
+    }
+}
@@ -12,24 +12,42 @@ import com.experian.eda.casemanagement.channel.bps.v0.model.datadefinition.Useca
 import com.experian.eda.casemanagement.channel.token.v0.InternalTokenClient;
 import com.experian.eda.casemanagement.generated.model.UsecaseServiceDataDefinitionResponse;
 import com.experian.eda.casemanagement.service.mapper.datadefinition.UsecaseServiceDataDefinitionModelMapper;
-import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.CustomLog;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.experian.eda.casemanagement.channel.ChannelsUtil.getCompletedResultFuture;
 
@@ -44,13 +62,62 @@ public class DataDefinitionsService {
     private final UsecaseServiceDataDefinitionModelMapper mapper;
     private final FilterConfigManager filterConfigManager;
     private final InternalTokenClient internalTokenClient;
+    private final MeterRegistry meterRegistry;
 
     @Setter
     @Value("${case-management.bps-default-datetime-format}")
     private String bpsDefaultDateTimeFormat;
 
+    @Value("${case-management.data-definitions.refresh-interval-millis:300000}")
+    private long refreshIntervalMillis;
+
+    @Value("${case-management.data-definitions.load-parallelism:4}")
+    private int loadParallelism;
+
+    @Value("${case-management.data-definitions.load-retries:2}")
+    private int loadRetries;
+
+    @Value("${case-management.data-definitions.load-retry-backoff-millis:500}")
+    private long loadRetryBackoffMillis;
+
+    @Value("${case-management.data-definitions.incomplete-retry-millis:30000}")
+    private long incompleteRetryMillis;
+
     private static final String DATA_DEF_CACHE_NAME = "DataDefinitionsService.mergedCharacteristicMetaData"; //NOI18N
 
+    private static final int NORMALIZED_KEYS_MAX_SIZE = 100_000;
+    private static final String SERVICE_LOAD_METRIC_NAME = "e1.DataDefinitionsService.serviceLoad"; //NOI18N
+    private static final String MERGE_METRIC_NAME = "e1.DataDefinitionsService.merge"; //NOI18N
+
+    /** Loads the data definitions of the services, bounding the number of concurrent calls to BPS. */
+    private ExecutorService loadExecutor;
+
+    /** Waits out the backoff of a failed load, so the load executor is free for other services meanwhile. */
+    private ScheduledExecutorService retryScheduler;
+
+    private RefreshingSnapshot<MergedCharacteristicMetaData> mergedDataDefinitions;
+
+    /** The normalized data definitions of each allowed BPS service id, as of the last load. */
+    private final Map<String, ServiceDataDefinitions> serviceDataDefinitions = new ConcurrentHashMap<>();
+
+    /** The characteristic keys with their array indexes removed, by key. */
+    private final Map<String, String> normalizedKeys = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        loadExecutor = Executors.newFixedThreadPool(loadParallelism, new CustomizableThreadFactory("data-definitions-load-")); //NOI18N
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("data-definitions-retry-")); //NOI18N
+        mergedDataDefinitions = new RefreshingSnapshot<>(DATA_DEF_CACHE_NAME, this::loadMergedFlatDataDefinitions, meterRegistry);
+        mergedDataDefinitions.scheduleRefresh(Duration.ofMillis(refreshIntervalMillis));
+    }
+
+    @PreDestroy
+    void destroy() {
+        mergedDataDefinitions.close();
+        retryScheduler.shutdownNow();
+        loadExecutor.shutdownNow();
+    }
+
     /**
      * Retrieve usecase service (input/output) data definition characteristic meta data.
      *
@@ -63,14 +130,15 @@ public class DataDefinitionsService {
     }
 
     /**
-     * Clean the merged data definition cache and repopulate it by calling to BPS endpoints
+     * Repopulate the merged data definition cache by calling to BPS endpoints. The data definitions are always loaded
+     * again, even when a scheduled refresh is in flight. Readers keep getting the current data definitions while they
+     * are reloaded, and keep them when the reload fails.
      *
      * @return refreshed merged data definition
      */
-    @CacheEvict(value = DATA_DEF_CACHE_NAME, allEntries = true)
     public MergedCharacteristicMetaData getRepopulatedMergedFlatDataDefinitions() {
-        LOGGER.info("Cleaning {} cache.", DATA_DEF_CACHE_NAME);
-        return getMergedFlatDataDefinitions();
+        LOGGER.info("Repopulating {} cache.", DATA_DEF_CACHE_NAME);
+        return mergedDataDefinitions.reload();
     }
 
     /**
@@ -78,42 +146,198 @@ public class DataDefinitionsService {
      * then transform it into characteristic meta data with tree format.
      * This method will return the characteristic key in flat format.
      * All the '[index]' will be trimmed from the key, removing all the duplicate data under a key with array index
+     * <p>
+     * Only the first callers wait for the data definitions to load, after that the cached data definitions are
+     * returned while they are refreshed in the background.
      *
      * @return Merged IDD & ODD from all allowed BPS service id configured at filter config
      */
-    @Cacheable(value = DATA_DEF_CACHE_NAME, unless = "#result == null")
     public MergedCharacteristicMetaData getMergedFlatDataDefinitions() {
+        return mergedDataDefinitions.get();
+    }
+
+    /**
+     * @return the holder of the merged data definitions, for the startup warm-up
+     */
+    RefreshingSnapshot<MergedCharacteristicMetaData> getMergedDataDefinitionsSnapshot() {
+        return mergedDataDefinitions;
+    }
+
+    private MergedCharacteristicMetaData loadMergedFlatDataDefinitions() {
         LOGGER.info("Calling BPS data definition endpoint and saving to {} cache.", DATA_DEF_CACHE_NAME);
         String auth = internalTokenClient.getJWTFromInternalTokenService();
         if (null != auth) {
-            // Create parallel future calls to BPS data-definitions endpoint asynchronously using all allowed BPS service id
-            List<CompletableFuture<RestResponse<UsecaseServiceDataDefinitionBpsResponse>>> allFutures =
-                filterConfigManager.getAllowedFilterDefinitions().stream()
-                    .map(filterDefinition -> bpsClient.getUsecaseDataDefinitionAsync(filterDefinition.getBpsServiceId(), auth))
+            long startNanos = System.nanoTime();
+            List<String> serviceIds = filterConfigManager.getAllowedFilterDefinitions().stream()
+                .map(filterDefinition -> filterDefinition.getBpsServiceId())
+                .collect(Collectors.toList());
+            // Load the data definitions of all allowed BPS service id in parallel, at most loadParallelism at a time
+            List<CompletableFuture<UsecaseServiceDataDefinitionBpsResponse>> allFutures = serviceIds.stream()
+                    .map(serviceId -> loadServiceDataDefinitions(serviceId, auth))
                     .collect(Collectors.toList());
-            // Wait for all call to be completed, and apply merging when all complete
-            CompletableFuture<MergedCharacteristicMetaData> mergedDataDefinitionFuture = CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[0]))
-                .thenApply(aVoid -> {
-                    List<UsecaseServiceDataDefinitionBpsResponse> responses = allFutures.stream()
-                        .map(future -> getCompletedResultFuture(future).body())
-                        .collect(Collectors.toList());
-
-                    // merge all the BPS Response IDD and ODD into one map of characteristic types
-                    Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions = responses.stream()
-                        .flatMap(response -> response.getData() == null ? Stream.empty()
-                            : response.getData().getStreamOfMergedCharacteristicType())
-                        .collect(Collectors.toMap(
-                            e -> DataDefinitionDto.ARRAY_INDEX_PATTERN.matcher(e.getKey()).replaceAll(""),
-                            Map.Entry::getValue,
-                            (existingValue, newValue) -> existingValue)); // On duplicate use the existingValue
-                    return new MergedCharacteristicMetaData(dataDefinitions, retrieveDateFormat(responses));
-                });
-            // retrieve the future completed value, throw the CompletionException cause if occur
-            return getCompletedResultFuture(mergedDataDefinitionFuture);
+            // A service that failed is merged from its last known data definitions
+            List<UsecaseServiceDataDefinitionBpsResponse> responses = allFutures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+            String outcome = "failure"; //NOI18N
+            try {
+                MergedCharacteristicMetaData merged = mergeDataDefinitions(serviceIds, responses);
+                if (!merged.isComplete()) {
+                    outcome = "incomplete"; //NOI18N
+                    return keepCompleteDataDefinitions(merged);
+                }
+                outcome = responses.contains(null) ? "partial" : "success"; //NOI18N
+                return merged;
+            } finally {
+                meterRegistry.timer(MERGE_METRIC_NAME, "outcome", outcome) //NOI18N
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
         }
         return null;
     }
 
+    /**
+     * Handle data definitions that miss the services that never loaded. They are loaded again sooner than the scheduled
+     * refresh. Complete data definitions, such as those persisted by a previous run, are kept until then.
+     *
+     * @return the current data definitions when they are complete, which keeps them, otherwise the incomplete ones
+     */
+    private MergedCharacteristicMetaData keepCompleteDataDefinitions(MergedCharacteristicMetaData merged) {
+        mergedDataDefinitions.refreshAfter(Duration.ofMillis(incompleteRetryMillis));
+        MergedCharacteristicMetaData current = mergedDataDefinitions.getIfLoaded();
+        if (current != null && current.isComplete()) {
+            LOGGER.warn("Unable to load the data definitions of {}, keeping the current data definitions, retrying in {} ms", //NOI18N
+                    merged.getMissingServiceIds(), incompleteRetryMillis);
+            return current;
+        }
+        LOGGER.warn("Serving data definitions without those of {}, retrying in {} ms", //NOI18N
+                merged.getMissingServiceIds(), incompleteRetryMillis);
+        return merged;
+    }
+
+    /**
+     * Load the data definitions of one BPS service on the load executor, retrying with an exponential backoff when the
+     * call fails. The backoff is waited out on the retry scheduler, not on a load thread.
+     *
+     * @return the data definitions, completed with null when every attempt failed
+     */
+    private CompletableFuture<UsecaseServiceDataDefinitionBpsResponse> loadServiceDataDefinitions(String serviceId, String auth) {
+        CompletableFuture<UsecaseServiceDataDefinitionBpsResponse> result = new CompletableFuture<>();
+        submitLoad(serviceId, auth, 0, loadRetryBackoffMillis, result);
+        return result;
+    }
+
+    private void submitLoad(String serviceId, String auth, int attempt, long backoffMillis,
+                            CompletableFuture<UsecaseServiceDataDefinitionBpsResponse> result) {
+        try {
+            loadExecutor.execute(() -> attemptLoad(serviceId, auth, attempt, backoffMillis, result));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            result.complete(null);
+        }
+    }
+
+    private void attemptLoad(String serviceId, String auth, int attempt, long backoffMillis,
+                             CompletableFuture<UsecaseServiceDataDefinitionBpsResponse> result) {
+        long startNanos = System.nanoTime();
+        try {
+            UsecaseServiceDataDefinitionBpsResponse response =
+                    getCompletedResultFuture(bpsClient.getUsecaseDataDefinitionAsync(serviceId, auth)).body();
+            recordServiceLoad(serviceId, "success", startNanos); //NOI18N
+            result.complete(response);
+            return;
+        } catch (RuntimeException ex) {
+            recordServiceLoad(serviceId, "failure", startNanos); //NOI18N
+            if (attempt >= loadRetries) {
+                LOGGER.warn("Unable to load the data definitions of {} after {} attempts due to {}", //NOI18N
+                        serviceId, attempt + 1, ex.getLocalizedMessage());
+                result.complete(null);
+                return;
+            }
+            LOGGER.debug("Retrying the data definitions of {} in {} ms", serviceId, backoffMillis, ex); //NOI18N
+        }
+        try {
+            retryScheduler.schedule(() -> submitLoad(serviceId, auth, attempt + 1, backoffMillis * 2, result),
+                    backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            result.complete(null);
+        }
+    }
+
+    private void recordServiceLoad(String serviceId, String outcome, long startNanos) {
+        meterRegistry.timer(SERVICE_LOAD_METRIC_NAME, "serviceId", serviceId, "outcome", outcome) //NOI18N
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Merge all the BPS Response IDD and ODD into one map of characteristic types, on duplicate keys the data
+     * definition of the first service wins. The normalized data definitions of each service are compared with those of
+     * the previous load, and the previous merge is returned as is when no service changed. A service whose response is
+     * null failed to load and keeps its last known data definitions, the merge is incomplete when it has none.
+     */
+    private MergedCharacteristicMetaData mergeDataDefinitions(List<String> serviceIds,
+                                                              List<UsecaseServiceDataDefinitionBpsResponse> responses) {
+        if (!serviceIds.isEmpty() && responses.stream().allMatch(Objects::isNull)) {
+            throw new IllegalStateException("Unable to load the data definitions of any BPS service"); //NOI18N
+        }
+        boolean changed = !serviceDataDefinitions.keySet().equals(new HashSet<>(serviceIds));
+        List<ServiceDataDefinitions> normalizedDefinitions = new ArrayList<>(responses.size());
+        Set<String> missingServiceIds = new TreeSet<>();
+        for (int i = 0; i < responses.size(); i++) {
+            String serviceId = serviceIds.get(i);
+            UsecaseServiceDataDefinitionBpsResponse response = responses.get(i);
+            if (response == null) {
+                ServiceDataDefinitions lastKnownDefinitions = serviceDataDefinitions.get(serviceId);
+                if (lastKnownDefinitions != null) {
+                    normalizedDefinitions.add(lastKnownDefinitions);
+                } else {
+                    missingServiceIds.add(serviceId);
+                }
+                continue;
+            }
+            Map<String, CharacteristicMetaDto.CharacteristicType> normalized = normalizeDataDefinitions(response);
+            ServiceDataDefinitions definitions = serviceDataDefinitions.get(serviceId);
+            if (definitions == null || !definitions.dataDefinitions.equals(normalized)) {
+                LOGGER.debug("Data definitions of {} changed", serviceId); // NOI18N
+                definitions = new ServiceDataDefinitions(normalized);
+                serviceDataDefinitions.put(serviceId, definitions);
+                changed = true;
+            }
+            normalizedDefinitions.add(definitions);
+        }
+        serviceDataDefinitions.keySet().retainAll(serviceIds);
+
+        String dateFormat = retrieveDateFormat(responses.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        MergedCharacteristicMetaData previous = mergedDataDefinitions.getIfLoaded();
+        if (!changed && previous != null && Objects.equals(previous.getDateFormat(), dateFormat)
+                && previous.getMissingServiceIds().equals(missingServiceIds)) {
+            return previous;
+        }
+        Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions = new HashMap<>();
+        for (ServiceDataDefinitions definitions : normalizedDefinitions) {
+            definitions.dataDefinitions.forEach(dataDefinitions::putIfAbsent); // On duplicate use the existingValue
+        }
+        return new MergedCharacteristicMetaData(dataDefinitions, dateFormat, missingServiceIds);
+    }
+
+    private Map<String, CharacteristicMetaDto.CharacteristicType> normalizeDataDefinitions(
+            UsecaseServiceDataDefinitionBpsResponse response) {
+        Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions = new LinkedHashMap<>();
+        if (response.getData() != null) {
+            response.getData().getStreamOfMergedCharacteristicType()
+                .forEach(e -> dataDefinitions.putIfAbsent(normalizeKey(e.getKey()), e.getValue()));
+        }
+        return dataDefinitions;
+    }
+
+    private String normalizeKey(String key) {
+        if (normalizedKeys.size() >= NORMALIZED_KEYS_MAX_SIZE) {
+            normalizedKeys.clear();
+        }
+        return normalizedKeys.computeIfAbsent(key, k -> DataDefinitionDto.ARRAY_INDEX_PATTERN.matcher(k).replaceAll(""));
+    }
+
     private String retrieveDateFormat(List<UsecaseServiceDataDefinitionBpsResponse> dataDefinitionBpsResponses) {
         Optional<UsecaseServiceDataDefinitionBpsResponse> anyBpsResponse = dataDefinitionBpsResponses.stream()
                 .filter(response -> response.getData() != null).findAny();
@@ -127,15 +351,47 @@ public class DataDefinitionsService {
         return dateFormat;
     }
 
+    /**
+     * The normalized data definitions of one BPS service
+     */
+    @RequiredArgsConstructor
+    private static class ServiceDataDefinitions {
+        private final Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions;
+    }
+
     /**
      * Merged characteristic meta data wrapper class
      */
     @Getter
     @EqualsAndHashCode
-    @RequiredArgsConstructor
     public static class MergedCharacteristicMetaData {
         private final Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions;
         private final String dateFormat;
+        /** The allowed BPS service ids whose data definitions never loaded, they are missing from the merge. */
+        private final Set<String> missingServiceIds;
+
+        public MergedCharacteristicMetaData(Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions,
+                                            String dateFormat) {
+            this(dataDefinitions, dateFormat, null);
+        }
+
+        @JsonCreator
+        public MergedCharacteristicMetaData(@JsonProperty("dataDefinitions") Map<String, CharacteristicMetaDto.CharacteristicType> dataDefinitions,
+                                            @JsonProperty("dateFormat") String dateFormat,
+                                            @JsonProperty("missingServiceIds") Set<String> missingServiceIds) {
+            this.dataDefinitions = dataDefinitions;
+            this.dateFormat = dateFormat;
+            this.missingServiceIds = missingServiceIds == null || missingServiceIds.isEmpty()
+                    ? Collections.emptySet() : Collections.unmodifiableSet(new TreeSet<>(missingServiceIds));
+        }
+
+        /**
+         * @return true when the data definitions of every allowed BPS service are merged
+         */
+        @JsonIgnore
+        public boolean isComplete() {
+            return missingServiceIds.isEmpty();
+        }
     }
 
 }
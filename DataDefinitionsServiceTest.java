@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.config.FilterConfigManager;
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.datadefinition.CharacteristicMetaDto;
+import com.experian.eda.casemanagement.channel.bps.v0.model.datadefinition.UsecaseServiceDataDefinitionBpsResponse;
+import com.experian.eda.casemanagement.channel.token.v0.InternalTokenClient;
+import com.experian.eda.casemanagement.service.mapper.datadefinition.UsecaseServiceDataDefinitionModelMapper;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Answers.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DataDefinitionsServiceTest {
+    private static final String SERVICE_ID = "service"; // NOI18N
+    private static final String OTHER_SERVICE_ID = "other"; // NOI18N
+    private static final String AUTH = "jwt"; // NOI18N
+
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private UsecaseServiceDataDefinitionModelMapper mapper;
+    @Mock
+    private FilterConfigManager filterConfigManager;
+    @Mock
+    private InternalTokenClient internalTokenClient;
+
+    /** Stand-ins when the characteristic type is not an enum, each is only equal to itself. */
+    private final Object[] characteristicTypes = new Object[2];
+    private DataDefinitionsService service;
+
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        service = new DataDefinitionsService(bpsClient, mapper, filterConfigManager, internalTokenClient, new SimpleMeterRegistry());
+        service.setBpsDefaultDateTimeFormat("yyyy-MM-dd"); // NOI18N
+        ReflectionTestUtils.setField(service, "refreshIntervalMillis", 0L); // NOI18N
+        ReflectionTestUtils.setField(service, "loadParallelism", 1); // NOI18N
+        ReflectionTestUtils.setField(service, "loadRetries", 0); // NOI18N
+        service.init();
+        lenient().when(internalTokenClient.getJWTFromInternalTokenService()).thenReturn(AUTH);
+        givenAllowedServices(SERVICE_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void unchangedDataDefinitionsKeepThePreviousMerge() throws ReflectiveOperationException {
+        givenDataDefinitions(SERVICE_ID, definition("a[0].b", 0)); // NOI18N
+        DataDefinitionsService.MergedCharacteristicMetaData first = service.getMergedFlatDataDefinitions();
+
+        givenDataDefinitions(SERVICE_ID, definition("a[1].b", 0)); // NOI18N
+        DataDefinitionsService.MergedCharacteristicMetaData second = service.getRepopulatedMergedFlatDataDefinitions();
+
+        // The same definitions once the array indexes are removed
+        assertSame(first, second);
+        assertEquals(Collections.singleton("a.b"), first.getDataDefinitions().keySet()); // NOI18N
+    }
+
+    @Test
+    void aChangedDefinitionIsMergedAgain() throws ReflectiveOperationException {
+        givenDataDefinitions(SERVICE_ID, definition("a", 0), definition("b", 0)); // NOI18N
+        DataDefinitionsService.MergedCharacteristicMetaData first = service.getMergedFlatDataDefinitions();
+
+        givenDataDefinitions(SERVICE_ID, definition("a", 0), definition("b", 1)); // NOI18N
+        DataDefinitionsService.MergedCharacteristicMetaData second = service.getRepopulatedMergedFlatDataDefinitions();
+
+        assertNotSame(first, second);
+        assertEquals(characteristicType(1), second.getDataDefinitions().get("b")); // NOI18N
+    }
+
+    @Test
+    void aServiceThatNeverLoadedIsFlaggedUntilItLoads() throws ReflectiveOperationException {
+        givenAllowedServices(SERVICE_ID, OTHER_SERVICE_ID);
+        givenDataDefinitions(SERVICE_ID, definition("a", 0)); // NOI18N
+        givenUnavailable(OTHER_SERVICE_ID);
+        DataDefinitionsService.MergedCharacteristicMetaData incomplete = service.getMergedFlatDataDefinitions();
+
+        assertFalse(incomplete.isComplete());
+        assertEquals(Collections.singleton(OTHER_SERVICE_ID), incomplete.getMissingServiceIds());
+        assertEquals(Collections.singleton("a"), incomplete.getDataDefinitions().keySet()); // NOI18N
+
+        givenDataDefinitions(OTHER_SERVICE_ID, definition("b", 0)); // NOI18N
+        DataDefinitionsService.MergedCharacteristicMetaData complete = service.getRepopulatedMergedFlatDataDefinitions();
+
+        assertTrue(complete.isComplete());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), complete.getDataDefinitions().keySet()); // NOI18N
+    }
+
+    @Test
+    void completeDataDefinitionsAreKeptOverIncompleteOnes() throws ReflectiveOperationException {
+        DataDefinitionsService.MergedCharacteristicMetaData persisted = new DataDefinitionsService.MergedCharacteristicMetaData(
+                Collections.singletonMap("a", (CharacteristicMetaDto.CharacteristicType) characteristicType(0)), "yyyy-MM-dd"); // NOI18N
+        assertTrue(service.getMergedDataDefinitionsSnapshot().seed(persisted, System.currentTimeMillis()));
+        givenAllowedServices(SERVICE_ID, OTHER_SERVICE_ID);
+        givenDataDefinitions(SERVICE_ID, definition("a", 0)); // NOI18N
+        givenUnavailable(OTHER_SERVICE_ID);
+
+        assertSame(persisted, service.getRepopulatedMergedFlatDataDefinitions());
+        assertSame(persisted, service.getMergedFlatDataDefinitions());
+    }
+
+    @Test
+    void aRetryWaitsWithoutHoldingALoadThread() throws ReflectiveOperationException {
+        service.destroy();
+        ReflectionTestUtils.setField(service, "loadRetries", 1); // NOI18N
+        ReflectionTestUtils.setField(service, "loadRetryBackoffMillis", 200L); // NOI18N
+        service.init();
+        givenAllowedServices(SERVICE_ID, OTHER_SERVICE_ID);
+        CompletableFuture<?> loaded = givenDataDefinitions(SERVICE_ID, definition("a", 0)); // NOI18N
+        givenDataDefinitions(OTHER_SERVICE_ID, definition("b", 0)); // NOI18N
+        // Fails once, then loads
+        doThrow(new IllegalStateException("BPS unavailable")).doReturn(loaded) // NOI18N
+                .when(bpsClient).getUsecaseDataDefinitionAsync(SERVICE_ID, AUTH);
+
+        DataDefinitionsService.MergedCharacteristicMetaData merged = service.getMergedFlatDataDefinitions();
+
+        assertTrue(merged.isComplete());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), merged.getDataDefinitions().keySet()); // NOI18N
+        // The single load thread loaded the other service while the first waited for its retry
+        InOrder inOrder = inOrder(bpsClient);
+        inOrder.verify(bpsClient).getUsecaseDataDefinitionAsync(SERVICE_ID, AUTH);
+        inOrder.verify(bpsClient).getUsecaseDataDefinitionAsync(OTHER_SERVICE_ID, AUTH);
+        inOrder.verify(bpsClient).getUsecaseDataDefinitionAsync(SERVICE_ID, AUTH);
+    }
+
+    private void givenUnavailable(String serviceId) {
+        doThrow(new IllegalStateException("BPS unavailable")).when(bpsClient).getUsecaseDataDefinitionAsync(serviceId, AUTH); // NOI18N
+    }
+
+    private void givenAllowedServices(String... serviceIds) throws ReflectiveOperationException {
+        // The filter definition type is only reachable through the signature of getAllowedFilterDefinitions
+        Class<?> filterDefinitionType = (Class<?>) ((ParameterizedType) FilterConfigManager.class
+                .getMethod("getAllowedFilterDefinitions").getGenericReturnType()).getActualTypeArguments()[0]; // NOI18N
+        Object[] filterDefinitions = new Object[serviceIds.length];
+        for (int i = 0; i < serviceIds.length; i++) {
+            filterDefinitions[i] = mock(filterDefinitionType);
+            filterDefinitionType.getMethod("getBpsServiceId").invoke(doReturn(serviceIds[i]).when(filterDefinitions[i])); // NOI18N
+        }
+        lenient().doReturn(Arrays.asList(filterDefinitions)).when(filterConfigManager).getAllowedFilterDefinitions();
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private final CompletableFuture<?> givenDataDefinitions(String serviceId, Map.Entry<String, Object>... definitions) {
+        UsecaseServiceDataDefinitionBpsResponse response = mock(UsecaseServiceDataDefinitionBpsResponse.class, RETURNS_DEEP_STUBS);
+        List<Map.Entry<String, Object>> entries = Arrays.asList(definitions);
+        // A new stream on each call, the definitions are streamed more than once
+        doAnswer(invocation -> entries.stream()).when(response.getData()).getStreamOfMergedCharacteristicType();
+        RestResponse<UsecaseServiceDataDefinitionBpsResponse> restResponse = mock(RestResponse.class);
+        lenient().when(restResponse.body()).thenReturn(response);
+        CompletableFuture<?> future = CompletableFuture.completedFuture(restResponse);
+        lenient().doReturn(future).when(bpsClient).getUsecaseDataDefinitionAsync(serviceId, AUTH);
+        return future;
+    }
+
+    private Map.Entry<String, Object> definition(String key, int type) {
+        return new AbstractMap.SimpleImmutableEntry<>(key, characteristicType(type));
+    }
+
+    private Object characteristicType(int index) {
+        Object[] constants = CharacteristicMetaDto.CharacteristicType.class.getEnumConstants();
+        if (constants != null) {
+            return constants[index];
+        }
+        if (characteristicTypes[index] == null) {
+            characteristicTypes[index] = mock(CharacteristicMetaDto.CharacteristicType.class);
+        }
+        return characteristicTypes[index];
+    }
+}
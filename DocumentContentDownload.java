@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A document or attachment download that writes the base64 content to the client as decoded bytes, decoding while
+ * writing rather than materialising the decoded file on the heap. Supports a single byte range
+ * ({@code Range: bytes=first-last}) and conditional requests through {@code If-None-Match}. Content already cached on
+ * disk is sent with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * <p>
+ * The entity tag is the SHA-256 of the base64 content, ignoring line breaks, so it changes with the content and cannot
+ * be derived from the document key alone. It is computed from the text BPS returned, in the same pass that decodes the
+ * content into the disk cache, so no extra decode is needed to tag a download.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class DocumentContentDownload {
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$"); // NOI18N
+    private static final String ACCEPT_RANGES = "Accept-Ranges"; // NOI18N
+    private static final String CONTENT_RANGE = "Content-Range"; // NOI18N
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+    private static final String DIGEST_ALGORITHM = "SHA-256"; // NOI18N
+
+    private final Response.Status status;
+    private final String eTag;
+    private final String mediaType;
+    /** The base64 content, null when no body is sent or the body is sent from {@link #channel}. */
+    private final CharSequence base64Content;
+    /**
+     * The open file holding the decoded content, null when no body is sent or the body is decoded from
+     * {@link #base64Content}. Closed once the body is written.
+     */
+    private final FileChannel channel;
+    private final long contentLength;
+    private final long rangeStart;
+    private final long rangeEnd;
+
+    /**
+     * @param eTag the entity tag of the content
+     * @return a download answering a conditional request whose entity tag matched
+     */
+    static DocumentContentDownload notModified(String eTag) {
+        return new DocumentContentDownload(Response.Status.NOT_MODIFIED, eTag, null, null, null, 0L, 0L, -1L);
+    }
+
+    /**
+     * @param eTag          the entity tag of the content
+     * @param mediaType     the media type of the decoded content
+     * @param base64Content the base64 encoded content
+     * @param range         the value of the Range header, null or blank for the whole content
+     * @return the download of the whole content or of the requested range
+     */
+    static DocumentContentDownload of(String eTag, String mediaType, CharSequence base64Content, String range) {
+        CharSequence content = base64Content != null ? base64Content : "";
+        return forRange(eTag, mediaType, content, null, decodedLength(content), range);
+    }
+
+    /**
+     * @param eTag      the entity tag of the content
+     * @param mediaType the media type of the content
+     * @param channel   the open file holding the decoded content, closed once the body is written
+     * @param size      the size of the file
+     * @param range     the value of the Range header, null or blank for the whole content
+     * @return the download of the whole file or of the requested range
+     */
+    static DocumentContentDownload ofChannel(String eTag, String mediaType, FileChannel channel, long size, String range) {
+        DocumentContentDownload download = forRange(eTag, mediaType, null, channel, size, range);
+        if (download.channel == null) {
+            // No body is sent
+            closeQuietly(channel);
+        }
+        return download;
+    }
+
+    private static DocumentContentDownload forRange(String eTag, String mediaType, CharSequence content, FileChannel channel,
+                                                    long length, String range) {
+        if (StringUtils.isBlank(range)) {
+            return new DocumentContentDownload(Response.Status.OK, eTag, mediaType, content, channel, length, 0L, length - 1);
+        }
+        Matcher matcher = RANGE_PATTERN.matcher(range.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            // Multiple or malformed ranges, the whole content is sent as allowed by RFC 7233
+            return new DocumentContentDownload(Response.Status.OK, eTag, mediaType, content, channel, length, 0L, length - 1);
+        }
+        long start;
+        long end;
+        if (matcher.group(1).isEmpty()) { // suffix range, the last n bytes
+            start = Math.max(0L, length - Long.parseLong(matcher.group(2)));
+            end = length - 1;
+        } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+        }
+        if (start >= length || start > end) {
+            return new DocumentContentDownload(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE, eTag, mediaType, null, null, length, 0L, -1L);
+        }
+        return new DocumentContentDownload(Response.Status.PARTIAL_CONTENT, eTag, mediaType, content, channel, length, start, end);
+    }
+
+    /**
+     * @param eTag        the entity tag of the content
+     * @param ifNoneMatch the value of the If-None-Match header, can be null
+     * @return true when the client already has the content
+     */
+    static boolean matches(String eTag, String ifNoneMatch) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) { // NOI18N
+            String trimmed = StringUtils.removeStart(candidate.trim(), "W/"); // NOI18N
+            if ("*".equals(trimmed) || trimmed.equals(eTag)) { // NOI18N
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the entity tag of content that is not decoded to disk. The text is only read, not decoded.
+     *
+     * @param base64Content the base64 encoded content, can be null
+     * @return the entity tag of the content
+     */
+    static String eTagOf(CharSequence base64Content) {
+        MessageDigest digest = newDigest();
+        try (InputStream text = new AsciiInputStream(base64Content != null ? base64Content : "", digest)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int count;
+            do {
+                count = text.read(buffer);
+            } while (count >= 0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return eTagOf(digest);
+    }
+
+    /**
+     * @param digest the digest the content was read through, see {@link #decode(CharSequence, MessageDigest)}
+     * @return the entity tag of the content
+     */
+    static String eTagOf(MessageDigest digest) {
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + '"'; // NOI18N
+    }
+
+    /**
+     * @return a new digest of the algorithm the entity tags are computed with
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param base64Content the base64 encoded content
+     * @return the stream of the decoded content
+     */
+    static InputStream decode(CharSequence base64Content) {
+        return Base64.getMimeDecoder().wrap(new AsciiInputStream(base64Content, null));
+    }
+
+    /**
+     * @param base64Content the base64 encoded content
+     * @param digest        the digest updated with the content as it is decoded, for {@link #eTagOf(MessageDigest)}
+     * @return the stream of the decoded content
+     */
+    static InputStream decode(CharSequence base64Content, MessageDigest digest) {
+        return Base64.getMimeDecoder().wrap(new AsciiInputStream(base64Content, digest));
+    }
+
+    /**
+     * @return the JAX-RS response for this download
+     */
+    public Response toResponse() {
+        Response.ResponseBuilder builder = Response.status(status)
+                .header(HttpHeaders.ETAG, eTag)
+                .header(ACCEPT_RANGES, "bytes"); // NOI18N
+        switch (status) {
+            case NOT_MODIFIED:
+                return builder.build();
+            case REQUESTED_RANGE_NOT_SATISFIABLE:
+                return builder.header(CONTENT_RANGE, "bytes */" + contentLength).build(); // NOI18N
+            case PARTIAL_CONTENT:
+                builder.header(CONTENT_RANGE, String.format("bytes %d-%d/%d", rangeStart, rangeEnd, contentLength)); // NOI18N
+                break;
+            default:
+                break;
+        }
+        return builder.type(mediaType)
+                .header(HttpHeaders.CONTENT_LENGTH, rangeEnd - rangeStart + 1)
+                .entity((StreamingOutput) this::write)
+                .build();
+    }
+
+    private void write(OutputStream output) throws IOException {
+        if (channel != null) {
+            transferFile(output);
+            return;
+        }
+        try (InputStream decoded = decode(base64Content)) {
+            long skipped = 0L;
+            while (skipped < rangeStart) {
+                long count = decoded.skip(rangeStart - skipped);
+                if (count <= 0) {
+                    return;
+                }
+                skipped += count;
+            }
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long remaining = rangeEnd - rangeStart + 1;
+            while (remaining > 0) {
+                int count = decoded.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    break;
+                }
+                output.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+
+    private void transferFile(OutputStream output) throws IOException {
+        try {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = rangeStart;
+            long remaining = rangeEnd - rangeStart + 1;
+            while (remaining > 0) {
+                long count = channel.transferTo(position, remaining, target);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+                remaining -= count;
+            }
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // Nothing more to read from it
+        }
+    }
+
+    private static long decodedLength(CharSequence base64Content) {
+        long significant = 0L;
+        for (int i = 0; i < base64Content.length(); i++) {
+            char c = base64Content.charAt(i);
+            if (c != '=' && !Character.isWhitespace(c)) {
+                significant++;
+            }
+        }
+        // Every 4 characters carry 3 bytes, a trailing group of 2 or 3 characters carries 1 or 2 bytes
+        long remainder = significant % 4;
+        return significant / 4 * 3 + (remainder > 1 ? remainder - 1 : 0);
+    }
+
+    /**
+     * Exposes the characters of a base64 text as bytes without copying the text, optionally updating a digest with the
+     * characters read other than whitespace.
+     */
+    static final class AsciiInputStream extends InputStream {
+        private final CharSequence text;
+        private final MessageDigest digest;
+        private int position;
+
+        AsciiInputStream(CharSequence text, MessageDigest digest) {
+            this.text = text;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() {
+            if (position >= text.length()) {
+                return -1;
+            }
+            char c = text.charAt(position++);
+            if (digest != null && !Character.isWhitespace(c)) {
+                digest.update((byte) c);
+            }
+            return c & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            for (int i = 0; i < count; i++) {
+                bytes[offset + i] = (byte) text.charAt(position++);
+            }
+            if (digest != null) {
+                // The runs between line breaks
+                int runStart = offset;
+                for (int i = offset; i < offset + count; i++) {
+                    if (Character.isWhitespace(bytes[i])) {
+                        digest.update(bytes, runStart, i - runStart);
+                        runStart = i + 1;
+                    }
+                }
+                digest.update(bytes, runStart, offset + count - runStart);
+            }
+            return count;
+        }
+    }
+}
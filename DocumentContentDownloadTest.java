@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentContentDownloadTest {
+    private static final String CONTENT = "0123456789"; // NOI18N
+    private static final String BASE64_CONTENT = Base64.getMimeEncoder().encodeToString(CONTENT.getBytes(StandardCharsets.US_ASCII));
+
+    @Test
+    void theEntityTagFollowsTheContentWhateverItsLineBreaks() {
+        String eTag = DocumentContentDownload.eTagOf(BASE64_CONTENT);
+        assertEquals(eTag, DocumentContentDownload.eTagOf("MDEy\r\nMzQ1\r\nNjc4OQ==")); // NOI18N
+        assertNotEquals(eTag, DocumentContentDownload.eTagOf(Base64.getEncoder().encodeToString(new byte[]{1})));
+        assertTrue(eTag.startsWith("\"") && eTag.endsWith("\"")); // NOI18N
+    }
+
+    @Test
+    void decodingTheContentComputesTheSameEntityTag() throws IOException {
+        MessageDigest digest = DocumentContentDownload.newDigest();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream input = DocumentContentDownload.decode("MDEy\r\nMzQ1\r\nNjc4OQ==", digest)) { // NOI18N
+            byte[] buffer = new byte[4];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                decoded.write(buffer, 0, count);
+            }
+        }
+
+        assertEquals(CONTENT, new String(decoded.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(DocumentContentDownload.eTagOf(BASE64_CONTENT), DocumentContentDownload.eTagOf(digest));
+    }
+
+    @Test
+    void matchesStrongWeakListedAndWildcardEntityTags() {
+        assertTrue(DocumentContentDownload.matches("\"a\"", "\"a\"")); // NOI18N
+        assertTrue(DocumentContentDownload.matches("\"a\"", "W/\"a\"")); // NOI18N
+        assertTrue(DocumentContentDownload.matches("\"a\"", "\"b\", \"a\"")); // NOI18N
+        assertTrue(DocumentContentDownload.matches("\"a\"", "*")); // NOI18N
+        assertFalse(DocumentContentDownload.matches("\"a\"", "\"b\"")); // NOI18N
+        assertFalse(DocumentContentDownload.matches("\"a\"", null)); // NOI18N
+    }
+
+    @Test
+    void sendsTheWholeContentWithoutRange() throws IOException {
+        DocumentContentDownload download = DocumentContentDownload.of("\"e\"", "text/plain", BASE64_CONTENT, null); // NOI18N
+        Response response = download.toResponse();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("10", response.getHeaderString(HttpHeaders.CONTENT_LENGTH)); // NOI18N
+        assertEquals(CONTENT, body(response));
+    }
+
+    @Test
+    void sendsTheRequestedRange() throws IOException {
+        assertRange("bytes=2-4", "bytes 2-4/10", "234"); // NOI18N
+        assertRange("bytes=7-", "bytes 7-9/10", "789"); // NOI18N
+        assertRange("bytes=-2", "bytes 8-9/10", "89"); // NOI18N
+        assertRange("bytes=8-20", "bytes 8-9/10", "89"); // NOI18N
+    }
+
+    @Test
+    void rejectsAnUnsatisfiableRangeAndIgnoresAMalformedOne() throws IOException {
+        Response unsatisfiable = DocumentContentDownload.of("\"e\"", "text/plain", BASE64_CONTENT, "bytes=10-").toResponse(); // NOI18N
+        assertEquals(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), unsatisfiable.getStatus());
+        assertEquals("bytes */10", unsatisfiable.getHeaderString("Content-Range")); // NOI18N
+
+        Response malformed = DocumentContentDownload.of("\"e\"", "text/plain", BASE64_CONTENT, "bytes=1-2,4-5").toResponse(); // NOI18N
+        assertEquals(Response.Status.OK.getStatusCode(), malformed.getStatus());
+        assertEquals(CONTENT, body(malformed));
+    }
+
+    @Test
+    void notModifiedHasNoBody() {
+        Response response = DocumentContentDownload.notModified("\"e\"").toResponse(); // NOI18N
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertEquals("\"e\"", response.getHeaderString(HttpHeaders.ETAG)); // NOI18N
+        assertNull(response.getEntity());
+    }
+
+    private static void assertRange(String range, String contentRange, String expectedBody) throws IOException {
+        Response response = DocumentContentDownload.of("\"e\"", "text/plain", BASE64_CONTENT, range).toResponse(); // NOI18N
+        assertEquals(Response.Status.PARTIAL_CONTENT.getStatusCode(), response.getStatus());
+        assertEquals(contentRange, response.getHeaderString("Content-Range")); // NOI18N
+        assertEquals(expectedBody, body(response));
+    }
+
+    static String body(Response response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.CustomLog;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Local disk cache of the decoded content of documents and note attachments. The least recently used entries are
+ * evicted first once the cache grows over its size limit. Each entry is a content file plus a properties file holding
+ * its metadata, named after the SHA-256 of the cache key so the cache can be rebuilt from the directory after a
+ * restart. Files are written to a temporary file and moved into place, so a reader never sees a partly written file.
+ * <p>
+ * BPS decides which documents a user may read, and cannot be asked without fetching the content again. Callers
+ * therefore include the caller key of {@link RequestSecurityContext#getCallerKey()} in the cache key. An entry is only
+ * served to the user BPS returned it to while the user holds the same permissions, and entries expire after a time to
+ * live, so a revoked access in BPS applies to cached content within that time.
+ * <p>
+ * The content is stored decoded, so the directory has to be configured explicitly. On file systems supporting POSIX
+ * permissions it is only accessible to the user running the service, as are the files, which are created as temporary
+ * files.
+ */
+@CustomLog
+@Component
+@RequiredArgsConstructor
+public class DocumentDiskCache {
+    private static final String CONTENT_SUFFIX = ".bin"; // NOI18N
+    private static final String METADATA_SUFFIX = ".properties"; // NOI18N
+    private static final String MEDIA_TYPE_PROPERTY = "mediaType"; // NOI18N
+    private static final String SIZE_PROPERTY = "size"; // NOI18N
+    private static final String ETAG_PROPERTY = "eTag"; // NOI18N
+    private static final String CACHED_AT_PROPERTY = "cachedAt"; // NOI18N
+    private static final String METRIC_PREFIX = "e1.DocumentDiskCache"; // NOI18N
+    private static final String OWNER_ONLY_DIRECTORY = "rwx------"; // NOI18N
+    private static final int LOCK_STRIPES = 64;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.document-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${case-management.document-cache.directory:}")
+    private String directoryName;
+
+    @Value("${case-management.document-cache.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${case-management.document-cache.ttl-millis:900000}")
+    private long ttlMillis;
+
+    private Path directory;
+
+    /** The cached entries by file name, in access order, guarded by itself. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /** Serialize the changes to the files of a cache key, by the hash of its file name. */
+    private final Object[] locks = newLocks();
+
+    /**
+     * The content of a cached document or attachment. The content file is already open, so it stays readable even if
+     * the entry is evicted before the content is sent; closing the content releases the file.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CachedContent implements Closeable {
+        private final FileChannel channel;
+        private final String mediaType;
+        private final long size;
+        /** The entity tag of the content, see {@link DocumentContentDownload#eTagOf(MessageDigest)}. */
+        private final String eTag;
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Unable to close cached document content", ex); // NOI18N
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+        private final Path file;
+        private final String mediaType;
+        private final long size;
+        private final String eTag;
+        private final long cachedAtMillis;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (StringUtils.isBlank(directoryName)) {
+            throw new IllegalStateException("case-management.document-cache.directory must be set when the document cache is enabled"); // NOI18N
+        }
+        directory = Paths.get(directoryName);
+        Files.createDirectories(directory);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) { // NOI18N
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString(OWNER_ONLY_DIRECTORY));
+        }
+        meterRegistry.gauge(METRIC_PREFIX + ".bytes", this, cache -> cache.totalBytes); // NOI18N
+        List<Path> metadataFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + METADATA_SUFFIX)) { // NOI18N
+            stream.forEach(metadataFiles::add);
+        }
+        // Oldest first, so the most recently written entries are the last to be evicted
+        metadataFiles.sort(Comparator.comparingLong(DocumentDiskCache::lastModified));
+        for (Path metadataFile : metadataFiles) {
+            String name = metadataFile.getFileName().toString();
+            name = name.substring(0, name.length() - METADATA_SUFFIX.length());
+            try {
+                Entry entry = readMetadata(name);
+                synchronized (entries) {
+                    entries.put(name, entry);
+                    totalBytes += entry.size;
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.warn("Discarding unreadable document cache entry {} due to {}", name, ex.getLocalizedMessage()); // NOI18N
+                delete(name);
+            }
+        }
+        evictOverLimit();
+        LOGGER.info("Document cache at {} holds {} entries, {} bytes", directory, entries.size(), totalBytes); // NOI18N
+    }
+
+    /**
+     * @return true when the cache is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param key the cache key, which includes the user the content was read for
+     * @return the cached content, open for reading; the caller closes it unless it is sent
+     */
+    public Optional<CachedContent> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String name = toFileName(key);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(name);
+        }
+        CachedContent cachedContent = null;
+        if (entry != null) {
+            if (ttlMillis > 0L && System.currentTimeMillis() - entry.cachedAtMillis > ttlMillis) {
+                remove(name, entry);
+            } else {
+                cachedContent = open(name, entry);
+            }
+        }
+        meterRegistry.counter(METRIC_PREFIX + ".gets", "result", cachedContent != null ? "hit" : "miss").increment(); // NOI18N
+        return Optional.ofNullable(cachedContent);
+    }
+
+    /**
+     * Decode and store the content of a document or attachment.
+     *
+     * @param key           the cache key, which includes the user the content was read for
+     * @param mediaType     the media type of the content
+     * @param base64Content the base64 encoded content
+     * @return the cached content, open for reading; empty when the content could not be stored
+     */
+    public Optional<CachedContent> put(String key, String mediaType, CharSequence base64Content) {
+        if (!enabled || base64Content == null) {
+            return Optional.empty();
+        }
+        String name = toFileName(key);
+        Path contentFile = directory.resolve(name + CONTENT_SUFFIX);
+        Path temporaryFile = null;
+        try {
+            temporaryFile = Files.createTempFile(directory, name, ".tmp"); // NOI18N
+            MessageDigest digest = DocumentContentDownload.newDigest();
+            try (InputStream decoded = DocumentContentDownload.decode(base64Content, digest)) {
+                Files.copy(decoded, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Entry entry = new Entry(contentFile, mediaType, Files.size(temporaryFile),
+                    DocumentContentDownload.eTagOf(digest), System.currentTimeMillis());
+            synchronized (lockFor(name)) {
+                writeMetadata(name, entry);
+                Files.move(temporaryFile, contentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                synchronized (entries) {
+                    Entry previous = entries.put(name, entry);
+                    totalBytes += entry.size - (previous != null ? previous.size : 0L);
+                }
+            }
+            // Opened before evicting, so the new content stays readable even if it is evicted straight away
+            CachedContent cachedContent = open(name, entry);
+            evictOverLimit();
+            return Optional.ofNullable(cachedContent);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Unable to cache document content {} due to {}", name, ex.getLocalizedMessage()); // NOI18N
+            remove(name);
+            deleteQuietly(temporaryFile);
+            return Optional.empty();
+        }
+    }
+
+    private CachedContent open(String name, Entry entry) {
+        CachedContent cachedContent = null;
+        try {
+            cachedContent = new CachedContent(FileChannel.open(entry.file, StandardOpenOption.READ), entry.mediaType,
+                    entry.size, entry.eTag);
+            // The file may have been replaced by a later put of the same key since the entry was read
+            if (cachedContent.getChannel().size() == entry.size) {
+                return cachedContent;
+            }
+        } catch (IOException ex) {
+            // Evicted or deleted since the entry was read
+            LOGGER.debug("Unable to open document cache entry {}", name, ex); // NOI18N
+        }
+        if (cachedContent != null) {
+            cachedContent.close();
+        }
+        remove(name, entry);
+        return null;
+    }
+
+    private void evictOverLimit() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> entry = eldest.next();
+                totalBytes -= entry.getValue().size;
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String name : evicted) {
+            synchronized (lockFor(name)) {
+                // Unless put again since
+                boolean cached;
+                synchronized (entries) {
+                    cached = entries.containsKey(name);
+                }
+                if (!cached) {
+                    delete(name);
+                }
+            }
+        }
+        if (!evicted.isEmpty()) {
+            meterRegistry.counter(METRIC_PREFIX + ".evictions").increment(evicted.size()); // NOI18N
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (lockFor(name)) {
+            synchronized (entries) {
+                Entry previous = entries.remove(name);
+                if (previous != null) {
+                    totalBytes -= previous.size;
+                }
+            }
+            delete(name);
+        }
+    }
+
+    private void remove(String name, Entry entry) {
+        synchronized (lockFor(name)) {
+            synchronized (entries) {
+                // A later put of the same key is kept
+                if (!entries.remove(name, entry)) {
+                    return;
+                }
+                totalBytes -= entry.size;
+            }
+            delete(name);
+        }
+    }
+
+    private void delete(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name + METADATA_SUFFIX));
+            Files.deleteIfExists(directory.resolve(name + CONTENT_SUFFIX));
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to delete document cache entry {} due to {}", name, ex.getLocalizedMessage()); // NOI18N
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Unable to delete {}", file, ex); // NOI18N
+        }
+    }
+
+    private Entry readMetadata(String name) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(directory.resolve(name + METADATA_SUFFIX), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Path contentFile = directory.resolve(name + CONTENT_SUFFIX);
+        long size = Long.parseLong(properties.getProperty(SIZE_PROPERTY));
+        if (Files.size(contentFile) != size) {
+            throw new IllegalStateException("Content size does not match its metadata"); // NOI18N
+        }
+        String eTag = properties.getProperty(ETAG_PROPERTY);
+        if (eTag == null) {
+            throw new IllegalStateException("Content has no entity tag"); // NOI18N
+        }
+        return new Entry(contentFile, properties.getProperty(MEDIA_TYPE_PROPERTY), size, eTag,
+                Long.parseLong(properties.getProperty(CACHED_AT_PROPERTY)));
+    }
+
+    private void writeMetadata(String name, Entry entry) throws IOException {
+        Properties properties = new Properties();
+        if (entry.mediaType != null) {
+            properties.setProperty(MEDIA_TYPE_PROPERTY, entry.mediaType);
+        }
+        properties.setProperty(SIZE_PROPERTY, Long.toString(entry.size));
+        properties.setProperty(ETAG_PROPERTY, entry.eTag);
+        properties.setProperty(CACHED_AT_PROPERTY, Long.toString(entry.cachedAtMillis));
+        Path temporaryFile = Files.createTempFile(directory, name, ".tmp"); // NOI18N
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temporaryFile, directory.resolve(name + METADATA_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private Object lockFor(String name) {
+        return locks[(name.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static String toFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)); // NOI18N
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+}
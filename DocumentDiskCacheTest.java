@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentDiskCacheTest {
+    private static final String CONTENT = "0123456789"; // NOI18N
+    private static final String BASE64_CONTENT = Base64.getEncoder().encodeToString(CONTENT.getBytes(StandardCharsets.US_ASCII));
+
+    @TempDir
+    Path directory;
+
+    private DocumentDiskCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = newCache(1024L, 60000L);
+    }
+
+    @Test
+    void storesTheDecodedContentWithItsEntityTag() throws IOException {
+        try (DocumentDiskCache.CachedContent stored = cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).get(); // NOI18N
+             DocumentDiskCache.CachedContent cached = cache.get("document/user1/doc1").get()) { // NOI18N
+            assertEquals(DocumentContentDownload.eTagOf(BASE64_CONTENT), stored.getETag());
+            assertEquals(stored.getETag(), cached.getETag());
+            assertEquals("text/plain", cached.getMediaType()); // NOI18N
+            assertEquals(CONTENT, read(cached));
+        }
+    }
+
+    @Test
+    void contentCachedForOneUserIsNotServedToAnother() {
+        cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+        assertFalse(cache.get("document/user2/doc1").isPresent()); // NOI18N
+    }
+
+    @Test
+    void expiredEntriesAreRemoved() throws IOException, InterruptedException {
+        cache = newCache(1024L, 1L);
+        cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+        Thread.sleep(20L);
+        assertFalse(cache.get("document/user1/doc1").isPresent()); // NOI18N
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0L, files.count());
+        }
+    }
+
+    @Test
+    void openContentStaysReadableAfterItIsEvicted() throws IOException {
+        cache = newCache(15L, 60000L);
+        try (DocumentDiskCache.CachedContent first = cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).get()) { // NOI18N
+            // Over the limit, the first entry is evicted and its files deleted
+            cache.put("document/user1/doc2", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+            assertFalse(cache.get("document/user1/doc1").isPresent()); // NOI18N
+            assertEquals(CONTENT, read(first));
+        }
+    }
+
+    @Test
+    void entriesAreRebuiltFromTheDirectory() throws IOException {
+        cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+        DocumentDiskCache restarted = newCache(1024L, 60000L);
+        Optional<DocumentDiskCache.CachedContent> cached = restarted.get("document/user1/doc1"); // NOI18N
+        assertTrue(cached.isPresent());
+        try (DocumentDiskCache.CachedContent content = cached.get()) {
+            assertEquals(CONTENT, read(content));
+        }
+    }
+
+    @Test
+    void onlyTheEntryFilesAreLeftInTheOwnerOnlyDirectory() throws IOException {
+        cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+        cache.put("document/user1/doc1", "text/plain", BASE64_CONTENT).ifPresent(DocumentDiskCache.CachedContent::close); // NOI18N
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2L, files.filter(file -> !file.toString().endsWith(".tmp")).count()); // NOI18N
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0L, files.filter(file -> file.toString().endsWith(".tmp")).count()); // NOI18N
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) { // NOI18N
+            assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory)); // NOI18N
+        }
+    }
+
+    @Test
+    void anEnabledCacheNeedsADirectory() {
+        DocumentDiskCache diskCache = new DocumentDiskCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(diskCache, "enabled", true); // NOI18N
+        ReflectionTestUtils.setField(diskCache, "directoryName", ""); // NOI18N
+        assertThrows(IllegalStateException.class, diskCache::init);
+    }
+
+    private DocumentDiskCache newCache(long maxBytes, long ttlMillis) throws IOException {
+        DocumentDiskCache diskCache = new DocumentDiskCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(diskCache, "enabled", true); // NOI18N
+        ReflectionTestUtils.setField(diskCache, "directoryName", directory.toString()); // NOI18N
+        ReflectionTestUtils.setField(diskCache, "maxBytes", maxBytes); // NOI18N
+        ReflectionTestUtils.setField(diskCache, "ttlMillis", ttlMillis); // NOI18N
+        diskCache.init();
+        return diskCache;
+    }
+
+    private static String read(DocumentDiskCache.CachedContent content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) content.getSize());
+        while (buffer.hasRemaining() && content.getChannel().read(buffer, buffer.position()) > 0) {
+            // Positional reads, the channel may be read again
+        }
+        return new String(buffer.array(), StandardCharsets.US_ASCII);
+    }
+}
@@ -9,6 +9,8 @@ import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BpsAttachmentContentDto;
 import com.experian.eda.casemanagement.channel.bps.v0.model.BpsDocumentContentDto;
 import com.experian.eda.casemanagement.channel.bps.v0.model.Response;
+import com.experian.eda.casemanagement.common.util.SecurityUtil;
+import com.experian.eda.casemanagement.exception.ResourcePermissionException;
 import com.experian.eda.casemanagement.generated.model.DocumentContentResponse;
 import com.experian.eda.casemanagement.service.mapper.documents.DocumentMapper;
 import com.experian.saas.service.wrapper.core.rest.RestResponse;
@@ -16,6 +18,8 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 /**
  * Service to handle retrieve the document content based on activity type
  */
@@ -27,6 +31,10 @@ public class DocumentsService {
 
     private final DocumentMapper mapper;
 
+    private final DocumentDiskCache documentDiskCache;
+
+    private final RequestSecurityContext requestSecurityContext;
+
     /**
      * To get the document content based on document key
      * @param documentKey document key
@@ -48,4 +56,71 @@ public class DocumentsService {
         Response<BpsAttachmentContentDto> result = bpsClient.getAttachmentContent(commentId, attachmentId);
         return mapper.toDocumentContentResponse(result);
     }
+
+    /**
+     * To stream the document content based on document key. The entity tag is derived from the content, a conditional
+     * request is only answered as not modified once the content was read for the caller. BPS decides which documents a
+     * user may read, and there is no permission of the service for documents. The content is therefore only served from
+     * the cache to the caller it was read for, with the same permissions: the caller key is resolved again on every
+     * request, so a change of the permissions of the user is a cache miss that asks BPS.
+     * @param documentKey document key
+     * @param documentType document type
+     * @param range the Range header value, null for the whole document
+     * @param ifNoneMatch the If-None-Match header value, can be null
+     * @return the download to send to the client
+     */
+    public DocumentContentDownload downloadDocumentContent(String documentKey, String documentType, String range, String ifNoneMatch) {
+        String cacheKey = String.join("/", "document", requestSecurityContext.getCallerKey(), documentKey, documentType); // NOI18N
+        Optional<DocumentDiskCache.CachedContent> cachedContent = documentDiskCache.get(cacheKey);
+        if (cachedContent.isPresent()) {
+            return toDownload(cachedContent.get(), range, ifNoneMatch);
+        }
+        RestResponse<Response<BpsDocumentContentDto>> result = bpsClient.getDocumentContent(documentKey);
+        DocumentContentResponse response = mapper.toDocumentContentResponse(result.body(), documentType, result.getHeaders());
+        return documentDiskCache.put(cacheKey, response.getMimeType(), response.getContent())
+                .map(cached -> toDownload(cached, range, ifNoneMatch))
+                .orElseGet(() -> toDownload(response, range, ifNoneMatch));
+    }
+
+    /**
+     * To stream the attachment content based on commentId and attachmentId. The entity tag is derived from the
+     * content, a conditional request is only answered as not modified once the content was read for the caller.
+     * @param commentId the comment id
+     * @param attachmentId attachment id
+     * @param range the Range header value, null for the whole attachment
+     * @param ifNoneMatch the If-None-Match header value, can be null
+     * @return the download to send to the client
+     */
+    public DocumentContentDownload downloadNoteAttachmentContent(@NonNull String commentId, @NonNull String attachmentId, String range, String ifNoneMatch) {
+        // Checked on every request, cached attachments are served without asking BPS
+        if (!requestSecurityContext.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT)) {
+            throw new ResourcePermissionException("No permission to view attachment."); // NOI18N
+        }
+        String cacheKey = String.join("/", "attachment", requestSecurityContext.getCallerKey(), commentId, attachmentId); // NOI18N
+        Optional<DocumentDiskCache.CachedContent> cachedContent = documentDiskCache.get(cacheKey);
+        if (cachedContent.isPresent()) {
+            return toDownload(cachedContent.get(), range, ifNoneMatch);
+        }
+        DocumentContentResponse response = getNoteAttachmentContent(commentId, attachmentId);
+        return documentDiskCache.put(cacheKey, response.getMimeType(), response.getContent())
+                .map(cached -> toDownload(cached, range, ifNoneMatch))
+                .orElseGet(() -> toDownload(response, range, ifNoneMatch));
+    }
+
+    private static DocumentContentDownload toDownload(DocumentDiskCache.CachedContent cachedContent, String range, String ifNoneMatch) {
+        if (DocumentContentDownload.matches(cachedContent.getETag(), ifNoneMatch)) {
+            cachedContent.close();
+            return DocumentContentDownload.notModified(cachedContent.getETag());
+        }
+        // The download closes the open content once it is sent
+        return DocumentContentDownload.ofChannel(cachedContent.getETag(), cachedContent.getMediaType(), cachedContent.getChannel(), cachedContent.getSize(), range);
+    }
+
+    private static DocumentContentDownload toDownload(DocumentContentResponse response, String range, String ifNoneMatch) {
+        String eTag = DocumentContentDownload.eTagOf(response.getContent());
+        if (DocumentContentDownload.matches(eTag, ifNoneMatch)) {
+            return DocumentContentDownload.notModified(eTag);
+        }
+        return DocumentContentDownload.of(eTag, response.getMimeType(), response.getContent(), range);
+    }
 }
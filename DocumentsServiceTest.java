@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsDocumentContentDto;
+import com.experian.eda.casemanagement.channel.bps.v0.model.Response;
+import com.experian.eda.casemanagement.generated.model.DocumentContentResponse;
+import com.experian.eda.casemanagement.service.mapper.documents.DocumentMapper;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentsServiceTest {
+    private static final String DOCUMENT_KEY = "doc1"; // NOI18N
+    private static final String DOCUMENT_TYPE = "pdf"; // NOI18N
+
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private DocumentMapper mapper;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    @TempDir
+    Path directory;
+
+    private DocumentsService documentsService;
+
+    @BeforeEach
+    void setUp() {
+        // The disk cache is disabled unless configured
+        DocumentDiskCache documentDiskCache = new DocumentDiskCache(new SimpleMeterRegistry());
+        documentsService = new DocumentsService(bpsClient, mapper, documentDiskCache, requestSecurityContext);
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|111"); // NOI18N
+    }
+
+    @Test
+    void aMatchingEntityTagIsOnlyAnsweredOnceBpsReturnedTheContent() {
+        String content = Base64.getEncoder().encodeToString("hello".getBytes()); // NOI18N
+        givenBpsDocument(content);
+        String eTag = DocumentContentDownload.eTagOf(content);
+
+        DocumentContentDownload download = documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, eTag);
+
+        assertEquals(javax.ws.rs.core.Response.Status.NOT_MODIFIED, download.getStatus());
+        verify(bpsClient, times(1)).getDocumentContent(DOCUMENT_KEY);
+    }
+
+    @Test
+    void changedContentIsSentAgainWithItsNewEntityTag() {
+        String previous = Base64.getEncoder().encodeToString("hello".getBytes()); // NOI18N
+        String current = Base64.getEncoder().encodeToString("world".getBytes()); // NOI18N
+        givenBpsDocument(current);
+
+        DocumentContentDownload download = documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null,
+                DocumentContentDownload.eTagOf(previous));
+
+        assertEquals(javax.ws.rs.core.Response.Status.OK, download.getStatus());
+        assertEquals(DocumentContentDownload.eTagOf(current), download.getETag());
+    }
+
+    @Test
+    void aDocumentBpsDoesNotReturnIsNeverAnsweredAsNotModified() {
+        when(bpsClient.getDocumentContent(DOCUMENT_KEY)).thenThrow(new IllegalStateException("not found")); // NOI18N
+        assertThrows(IllegalStateException.class,
+                () -> documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, "*")); // NOI18N
+    }
+
+    @Test
+    void aCachedDocumentIsOnlyServedToTheUserItWasReadFor() throws IOException {
+        DocumentDiskCache documentDiskCache = new DocumentDiskCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(documentDiskCache, "enabled", true); // NOI18N
+        ReflectionTestUtils.setField(documentDiskCache, "directoryName", directory.toString()); // NOI18N
+        ReflectionTestUtils.setField(documentDiskCache, "maxBytes", 1024L); // NOI18N
+        ReflectionTestUtils.setField(documentDiskCache, "ttlMillis", 60000L); // NOI18N
+        documentDiskCache.init();
+        documentsService = new DocumentsService(bpsClient, mapper, documentDiskCache, requestSecurityContext);
+        String content = Base64.getEncoder().encodeToString("hello".getBytes()); // NOI18N
+        givenBpsDocument(content);
+
+        assertEquals("hello", DocumentContentDownloadTest.body( // NOI18N
+                documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, null).toResponse()));
+        assertEquals("hello", DocumentContentDownloadTest.body( // NOI18N
+                documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, null).toResponse()));
+        verify(bpsClient, times(1)).getDocumentContent(DOCUMENT_KEY);
+
+        // Another user is asked for through BPS
+        when(requestSecurityContext.getCallerKey()).thenReturn("user2|111"); // NOI18N
+        documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, null);
+        verify(bpsClient, times(2)).getDocumentContent(DOCUMENT_KEY);
+
+        // So is the same user once a permission changed
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|101"); // NOI18N
+        documentsService.downloadDocumentContent(DOCUMENT_KEY, DOCUMENT_TYPE, null, null);
+        verify(bpsClient, times(3)).getDocumentContent(DOCUMENT_KEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenBpsDocument(String content) {
+        RestResponse<Response<BpsDocumentContentDto>> result = mock(RestResponse.class);
+        when(bpsClient.getDocumentContent(DOCUMENT_KEY)).thenReturn(result);
+        DocumentContentResponse response = mock(DocumentContentResponse.class);
+        when(response.getContent()).thenReturn(content);
+        when(response.getMimeType()).thenReturn("application/pdf"); // NOI18N
+        when(mapper.toDocumentContentResponse(any(), eq(DOCUMENT_TYPE), any())).thenReturn(response);
+    }
+}
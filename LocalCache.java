@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A small in-process cache bounded by size with an optional time to live, evicting the least recently used entry
+ * first. The size is the number of entries, or the total weight of the entries when the cache has a weigher. Hits and
+ * misses are published as the {@code e1.LocalCache.gets} meter tagged with the cache name.
+ *
+ * @param <K> the key type
+ * @param <V> the value type, null values are not cached
+ */
+class LocalCache<K, V> {
+    private static final String GETS_METRIC_NAME = "e1.LocalCache.gets"; // NOI18N
+    private static final String SIZE_METRIC_NAME = "e1.LocalCache.size"; // NOI18N
+    private static final String WEIGHT_METRIC_NAME = "e1.LocalCache.weight"; // NOI18N
+    private static final String EVICTIONS_METRIC_NAME = "e1.LocalCache.evictions"; // NOI18N
+
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongFunction<? super V> weigher;
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long totalWeight;
+
+    /**
+     * @param name          the cache name used to tag the metrics
+     * @param maxSize       the maximum number of entries kept
+     * @param ttl           how long an entry is served after it was put, zero or negative means no expiry
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    LocalCache(String name, long maxSize, Duration ttl, MeterRegistry meterRegistry) {
+        this(name, maxSize, ttl, value -> 1L, meterRegistry);
+    }
+
+    /**
+     * @param name          the cache name used to tag the metrics
+     * @param maxWeight     the maximum total weight of the entries kept
+     * @param ttl           how long an entry is served after it was put, zero or negative means no expiry
+     * @param weigher       the weight of a value, computed once when the value is put
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    LocalCache(String name, long maxWeight, Duration ttl, ToLongFunction<? super V> weigher, MeterRegistry meterRegistry) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.isNegative() || ttl.isZero() ? 0L : ttl.toNanos();
+        this.weigher = weigher;
+        this.hits = meterRegistry.counter(GETS_METRIC_NAME, "cache", name, "result", "hit"); // NOI18N
+        this.misses = meterRegistry.counter(GETS_METRIC_NAME, "cache", name, "result", "miss"); // NOI18N
+        this.evictions = meterRegistry.counter(EVICTIONS_METRIC_NAME, "cache", name); // NOI18N
+        meterRegistry.gauge(SIZE_METRIC_NAME, Collections.singletonList(Tag.of("cache", name)), this, LocalCache::size); // NOI18N
+        meterRegistry.gauge(WEIGHT_METRIC_NAME, Collections.singletonList(Tag.of("cache", name)), this, LocalCache::weight); // NOI18N
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the cached value, or null when there is no entry or the entry has expired
+     */
+    V getIfPresent(K key) {
+        V value;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.isExpired(ttlNanos)) {
+                remove(key);
+                entry = null;
+            }
+            value = entry != null ? entry.value : null;
+        }
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeight) {
+            // Would evict everything else and then itself
+            invalidate(key);
+            return;
+        }
+        long evicted = 0L;
+        synchronized (entries) {
+            Entry<V> previous = entries.put(key, new Entry<>(value, weight));
+            totalWeight += weight - (previous != null ? previous.weight : 0L);
+            Iterator<Entry<V>> eldest = entries.values().iterator();
+            while (totalWeight > maxWeight && eldest.hasNext()) {
+                totalWeight -= eldest.next().weight;
+                eldest.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            evictions.increment(evicted);
+        }
+    }
+
+    void invalidate(K key) {
+        synchronized (entries) {
+            remove(key);
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0L;
+        }
+    }
+
+    long size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+
+    private void remove(K key) {
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long createdNanos = System.nanoTime();
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        private boolean isExpired(long ttlNanos) {
+            return ttlNanos > 0 && System.nanoTime() - createdNanos >= ttlNanos;
+        }
+    }
+}
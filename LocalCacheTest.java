@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryFirst() {
+        LocalCache<String, String> cache = new LocalCache<>("test", 2, Duration.ZERO, meterRegistry); // NOI18N
+        cache.put("a", "1"); // NOI18N
+        cache.put("b", "2"); // NOI18N
+        cache.getIfPresent("a"); // NOI18N
+        cache.put("c", "3"); // NOI18N
+
+        assertEquals("1", cache.getIfPresent("a")); // NOI18N
+        assertNull(cache.getIfPresent("b")); // NOI18N
+        assertEquals("3", cache.getIfPresent("c")); // NOI18N
+        assertEquals(1.0, meterRegistry.counter("e1.LocalCache.evictions", "cache", "test").count()); // NOI18N
+    }
+
+    @Test
+    void expiresEntriesAfterTheTimeToLive() throws InterruptedException {
+        LocalCache<String, String> cache = new LocalCache<>("test", 10, Duration.ofMillis(20), meterRegistry); // NOI18N
+        cache.put("a", "1"); // NOI18N
+        assertEquals("1", cache.getIfPresent("a")); // NOI18N
+        Thread.sleep(40L);
+        assertNull(cache.getIfPresent("a")); // NOI18N
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    void boundsTheTotalWeightAndSkipsValuesHeavierThanTheCache() {
+        LocalCache<String, String> cache = new LocalCache<>("test", 10, Duration.ZERO, String::length, meterRegistry); // NOI18N
+        cache.put("a", "12345"); // NOI18N
+        cache.put("b", "1234"); // NOI18N
+        cache.put("c", "123"); // NOI18N
+        assertNull(cache.getIfPresent("a")); // NOI18N
+        assertEquals(7L, cache.weight());
+
+        cache.put("b", "12345678901"); // NOI18N
+        assertNull(cache.getIfPresent("b")); // NOI18N
+        assertEquals(3L, cache.weight());
+    }
+
+    @Test
+    void replacingAnEntryUpdatesTheWeight() {
+        LocalCache<String, String> cache = new LocalCache<>("test", 10, Duration.ZERO, String::length, meterRegistry); // NOI18N
+        cache.put("a", "12345"); // NOI18N
+        cache.put("a", "12"); // NOI18N
+        assertEquals(2L, cache.weight());
+        cache.invalidateAll();
+        assertEquals(0L, cache.weight());
+    }
+
+    @Test
+    void doesNotCacheNullValues() {
+        LocalCache<String, String> cache = new LocalCache<>("test", 10, Duration.ZERO, meterRegistry); // NOI18N
+        cache.put("a", null); // NOI18N
+        assertEquals(0L, cache.size());
+    }
+}
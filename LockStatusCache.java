@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsLockResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Short lived cache of the BPS lock status of cases, keyed by business key. Entries are evicted when this service
+ * unlocks or updates a case, callers that cannot tolerate a lock status up to the TTL old bypass the cache.
+ * A BPS read that overlaps an eviction of one of its keys does not leave its answer in the cache, as it may predate
+ * the change that caused the eviction.
+ */
+@Component
+@RequiredArgsConstructor
+public class LockStatusCache {
+    private static final String CACHE_NAME = "LockStatusCache"; // NOI18N
+    private static final int VERSION_STRIPES = 64;
+
+    private final BpsClient bpsClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${case-management.lock-status-cache.ttl-millis:2000}")
+    private long ttlMillis;
+
+    @Value("${case-management.lock-status-cache.max-size:10000}")
+    private long maxSize;
+
+    /** The lock of each business key, empty when BPS did not return a lock. */
+    private LocalCache<String, Optional<BpsLockResponse>> cache;
+
+    /** Bumped by every eviction of a business key hashing to the stripe, before the entry is invalidated. */
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    @PostConstruct
+    void init() {
+        cache = new LocalCache<>(CACHE_NAME, maxSize, Duration.ofMillis(ttlMillis), meterRegistry);
+    }
+
+    /**
+     * Get the lock of a single case.
+     *
+     * @param businessKey the BPS business key of the case
+     * @param bypassCache when true BPS is always asked, the cache is refreshed with the answer
+     * @return the lock returned by BPS
+     */
+    public BpsLockResponse getLock(String businessKey, boolean bypassCache) {
+        Optional<BpsLockResponse> lock = bypassCache ? null : cache.getIfPresent(businessKey);
+        if (lock == null) {
+            long version = versionOf(businessKey);
+            lock = Optional.ofNullable(bpsClient.executeGetLock(businessKey));
+            fill(businessKey, lock, version);
+        }
+        return lock.orElse(null);
+    }
+
+    /**
+     * Get the lock status of many cases, asking BPS in one call for the business keys that are not cached.
+     *
+     * @param businessKeys the BPS business keys of the cases
+     * @param bypassCache  when true BPS is asked for all the keys, the cache is refreshed with the answer
+     * @return the lock of each business key that BPS returned a lock for
+     */
+    public Map<String, BpsLockResponse> getLockStatus(Set<String> businessKeys, boolean bypassCache) {
+        if (CollectionUtils.isEmpty(businessKeys)) {
+            return Collections.emptyMap();
+        }
+        Map<String, BpsLockResponse> lockMap = new HashMap<>();
+        Set<String> missingKeys = new HashSet<>();
+        for (String businessKey : businessKeys) {
+            Optional<BpsLockResponse> lock = bypassCache ? null : cache.getIfPresent(businessKey);
+            if (lock == null) {
+                missingKeys.add(businessKey);
+            } else {
+                lock.ifPresent(bpsLockResponse -> lockMap.put(businessKey, bpsLockResponse));
+            }
+        }
+        if (!missingKeys.isEmpty()) {
+            Map<String, Long> versionMap = new HashMap<>();
+            for (String businessKey : missingKeys) {
+                versionMap.put(businessKey, versionOf(businessKey));
+            }
+            Map<String, BpsLockResponse> bpsLockMap = bpsClient.executeGetLockStatus(missingKeys);
+            for (String businessKey : missingKeys) {
+                BpsLockResponse bpsLockResponse = bpsLockMap != null ? bpsLockMap.get(businessKey) : null;
+                fill(businessKey, Optional.ofNullable(bpsLockResponse), versionMap.get(businessKey));
+                if (bpsLockResponse != null) {
+                    lockMap.put(businessKey, bpsLockResponse);
+                }
+            }
+        }
+        return lockMap;
+    }
+
+    /**
+     * Evict the lock status of a case, to be called whenever the lock of the case may have changed.
+     *
+     * @param businessKey the BPS business key of the case
+     */
+    public void evict(String businessKey) {
+        versions.incrementAndGet(stripeOf(businessKey));
+        cache.invalidate(businessKey);
+    }
+
+    private long versionOf(String businessKey) {
+        return versions.get(stripeOf(businessKey));
+    }
+
+    /**
+     * Cache a lock read from BPS, unless the key was evicted since the read started. The version is checked again after
+     * the put, so an eviction that lands between the check and the put still removes the entry.
+     */
+    private void fill(String businessKey, Optional<BpsLockResponse> lock, long version) {
+        if (versionOf(businessKey) != version) {
+            return;
+        }
+        cache.put(businessKey, lock);
+        if (versionOf(businessKey) != version) {
+            cache.invalidate(businessKey);
+        }
+    }
+
+    private static int stripeOf(String businessKey) {
+        return (businessKey.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsLockResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LockStatusCacheTest {
+    @Mock
+    private BpsClient bpsClient;
+
+    private LockStatusCache lockStatusCache;
+
+    @BeforeEach
+    void setUp() {
+        lockStatusCache = new LockStatusCache(bpsClient, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(lockStatusCache, "ttlMillis", 60_000L); // NOI18N
+        ReflectionTestUtils.setField(lockStatusCache, "maxSize", 100L); // NOI18N
+        lockStatusCache.init();
+    }
+
+    @Test
+    void cachesLocksAndTheAbsenceOfALock() {
+        BpsLockResponse lock = mock(BpsLockResponse.class);
+        when(bpsClient.executeGetLock("c1")).thenReturn(lock); // NOI18N
+
+        assertSame(lock, lockStatusCache.getLock("c1", false)); // NOI18N
+        assertSame(lock, lockStatusCache.getLock("c1", false)); // NOI18N
+        assertNull(lockStatusCache.getLock("c2", false)); // NOI18N
+        assertNull(lockStatusCache.getLock("c2", false)); // NOI18N
+        verify(bpsClient, times(1)).executeGetLock("c1"); // NOI18N
+        verify(bpsClient, times(1)).executeGetLock("c2"); // NOI18N
+    }
+
+    @Test
+    void bypassingTheCacheAsksBpsAndRefreshesTheCache() {
+        when(bpsClient.executeGetLock("c1")).thenReturn(null); // NOI18N
+        lockStatusCache.getLock("c1", false); // NOI18N
+        lockStatusCache.getLock("c1", true); // NOI18N
+        lockStatusCache.getLock("c1", false); // NOI18N
+        verify(bpsClient, times(2)).executeGetLock("c1"); // NOI18N
+    }
+
+    @Test
+    void evictionForcesTheNextLookupToBps() {
+        lockStatusCache.getLock("c1", false); // NOI18N
+        lockStatusCache.evict("c1"); // NOI18N
+        lockStatusCache.getLock("c1", false); // NOI18N
+        verify(bpsClient, times(2)).executeGetLock("c1"); // NOI18N
+    }
+
+    @Test
+    void batchLookupOnlyAsksBpsForTheKeysThatAreNotCached() {
+        BpsLockResponse lock = mock(BpsLockResponse.class);
+        when(bpsClient.executeGetLock("c1")).thenReturn(lock); // NOI18N
+        when(bpsClient.executeGetLockStatus(Collections.singleton("c2"))).thenReturn(Collections.emptyMap()); // NOI18N
+        lockStatusCache.getLock("c1", false); // NOI18N
+
+        Map<String, BpsLockResponse> lockMap = lockStatusCache.getLockStatus(new HashSet<>(Arrays.asList("c1", "c2")), false); // NOI18N
+
+        assertEquals(Collections.singletonMap("c1", lock), lockMap); // NOI18N
+        verify(bpsClient).executeGetLockStatus(Collections.singleton("c2")); // NOI18N
+    }
+
+    @Test
+    void aReadOverlappingAnEvictionIsNotCached() {
+        BpsLockResponse lock = mock(BpsLockResponse.class);
+        when(bpsClient.executeGetLock("c1")).thenAnswer(invocation -> { // NOI18N
+            lockStatusCache.evict("c1"); // NOI18N
+            return lock;
+        });
+
+        assertSame(lock, lockStatusCache.getLock("c1", false)); // NOI18N
+        lockStatusCache.getLock("c1", false); // NOI18N
+
+        verify(bpsClient, times(2)).executeGetLock("c1"); // NOI18N
+    }
+
+    @Test
+    void aBatchReadOverlappingAnEvictionOnlyCachesTheKeysThatWereNotEvicted() {
+        when(bpsClient.executeGetLockStatus(new HashSet<>(Arrays.asList("c1", "c2")))).thenAnswer(invocation -> { // NOI18N
+            lockStatusCache.evict("c1"); // NOI18N
+            return Collections.emptyMap();
+        });
+        when(bpsClient.executeGetLockStatus(Collections.singleton("c1"))).thenReturn(Collections.emptyMap()); // NOI18N
+
+        lockStatusCache.getLockStatus(new HashSet<>(Arrays.asList("c1", "c2")), false); // NOI18N
+        lockStatusCache.getLockStatus(new HashSet<>(Arrays.asList("c1", "c2")), false); // NOI18N
+
+        verify(bpsClient).executeGetLockStatus(Collections.singleton("c1")); // NOI18N
+    }
+}
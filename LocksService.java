@@ -15,6 +15,7 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class LocksService {
     private final BpsClient bpsClient;
+    private final LockStatusCache lockStatusCache;
 
     /**
      * Try to unlock case based on the bpsBusinessKey
@@ -24,6 +25,10 @@ public class LocksService {
      * @param xExternalUser  the real user id from external
      */
     public void runUnlock(String bpsBusinessKey, boolean force, String xExternalUser) {
-        bpsClient.executeUnlock(bpsBusinessKey, force, xExternalUser);
+        try {
+            bpsClient.executeUnlock(bpsBusinessKey, force, xExternalUser);
+        } finally {
+            lockStatusCache.evict(bpsBusinessKey);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.CustomLog;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.experian.eda.casemanagement.channel.ChannelsUtil.getCompletedResultFuture;
+
+/**
+ * Holds the latest snapshot of a value that is expensive to load, such as data fetched from every BPS service.
+ * Only the first readers wait for the value to load, and concurrent loads are collapsed into one. After that, readers
+ * get the current snapshot without blocking while it is refreshed in the background on a schedule. A failed refresh
+ * keeps the stale snapshot. A new snapshot replaces the previous one atomically. A loader that returns the current
+ * snapshot keeps it: the refresh counts as unchanged and the listeners are not called.
+ *
+ * @param <T> the snapshot type, treated as immutable
+ */
+@CustomLog
+class RefreshingSnapshot<T> {
+    private static final String REFRESHES_METRIC_NAME = "e1.RefreshingSnapshot.refreshes"; // NOI18N
+    private static final String AGE_METRIC_NAME = "e1.RefreshingSnapshot.age"; // NOI18N
+
+    private final String name;
+    private final Supplier<T> loader;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<T> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<T>> inFlight = new AtomicReference<>();
+    private final List<Consumer<? super T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long loadedAtMillis;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> retry;
+
+    /**
+     * @param name          the snapshot name used to tag the metrics and name the refresh thread
+     * @param loader        loads a new snapshot, may return null when the value is not available yet
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    RefreshingSnapshot(String name, Supplier<T> loader, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.loader = loader;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge(AGE_METRIC_NAME, Collections.singletonList(Tag.of("snapshot", name)), this, // NOI18N
+                holder -> holder.loadedAtMillis == 0L ? 0.0 : (System.currentTimeMillis() - holder.loadedAtMillis) / 1000.0);
+    }
+
+    /**
+     * Refresh the snapshot in the background at a fixed delay.
+     *
+     * @param interval the delay between the end of a refresh and the start of the next, zero or negative to disable
+     */
+    synchronized void scheduleRefresh(Duration interval) {
+        if (interval.isNegative() || interval.isZero() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(name + "-refresh-")); // NOI18N
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refresh the snapshot once in the background after a delay shorter than the scheduled interval, such as when the
+     * loader could only load part of the value. Does nothing when the scheduled refresh is disabled or a retry is
+     * already pending.
+     *
+     * @param delay the delay before the refresh
+     */
+    synchronized void refreshAfter(Duration delay) {
+        if (scheduler == null || retry != null) {
+            return;
+        }
+        retry = scheduler.schedule(this::retryQuietly, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background refresh.
+     */
+    synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            retry = null;
+        }
+    }
+
+    /**
+     * Serve a snapshot loaded elsewhere, such as a copy persisted by a previous run, until the first load completes.
+     *
+     * @param value          the snapshot
+     * @param loadedAtMillis when the snapshot was loaded
+     * @return true when the snapshot was used, false when a snapshot was already loaded
+     */
+    boolean seed(T value, long loadedAtMillis) {
+        if (value == null || !snapshot.compareAndSet(null, value)) {
+            return false;
+        }
+        this.loadedAtMillis = loadedAtMillis;
+        return true;
+    }
+
+    /**
+     * @param listener called with each new snapshot once it is loaded, on the loading thread
+     */
+    void addListener(Consumer<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the name of the snapshot
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the current snapshot, loading it when there is none yet; null when the loader returned null
+     */
+    T get() {
+        T current = snapshot.get();
+        return current != null ? current : getCompletedResultFuture(load());
+    }
+
+    /**
+     * @return the current snapshot without loading it, null when there is none yet
+     */
+    T getIfLoaded() {
+        return snapshot.get();
+    }
+
+    /**
+     * Load a new snapshot now, joining a load already in flight. The current snapshot is kept when the load fails.
+     *
+     * @return the new snapshot
+     */
+    T refresh() {
+        return getCompletedResultFuture(load());
+    }
+
+    /**
+     * Load a new snapshot that starts after this call. A load already in flight may have read its data before the
+     * call, so it is awaited and a new load is started rather than joined. The current snapshot is kept when the load
+     * fails.
+     *
+     * @return the new snapshot
+     */
+    T reload() {
+        CompletableFuture<T> current = inFlight.get();
+        if (current != null) {
+            try {
+                current.join();
+            } catch (RuntimeException ex) {
+                // Its failure is reported to its own callers, the new load is started anyway
+            }
+        }
+        // Any load in flight by now started after this call, joining it is enough
+        return getCompletedResultFuture(load());
+    }
+
+    private void retryQuietly() {
+        synchronized (this) {
+            // The refresh may need another retry
+            retry = null;
+        }
+        refreshQuietly();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Refresh of {} failed, serving the snapshot loaded at {} due to {}", // NOI18N
+                    name, loadedAtMillis, ex.getLocalizedMessage());
+        }
+    }
+
+    private CompletableFuture<T> load() {
+        CompletableFuture<T> promise = new CompletableFuture<>();
+        while (!inFlight.compareAndSet(null, promise)) {
+            CompletableFuture<T> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+        }
+        try {
+            T value = loader.get();
+            boolean unchanged = value != null && value == snapshot.get();
+            if (value != null) {
+                snapshot.set(value);
+                loadedAtMillis = System.currentTimeMillis();
+            }
+            meterRegistry.counter(REFRESHES_METRIC_NAME, "snapshot", name, // NOI18N
+                    "result", unchanged ? "unchanged" : "success").increment(); // NOI18N
+            promise.complete(value);
+            if (value != null && !unchanged) {
+                notifyListeners(value);
+            }
+        } catch (RuntimeException ex) {
+            meterRegistry.counter(REFRESHES_METRIC_NAME, "snapshot", name, "result", "failure").increment(); // NOI18N
+            promise.completeExceptionally(ex);
+        } finally {
+            inFlight.compareAndSet(promise, null);
+        }
+        return promise;
+    }
+
+    private void notifyListeners(T value) {
+        for (Consumer<? super T> listener : listeners) {
+            try {
+                listener.accept(value);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Listener of {} failed due to {}", name, ex.getLocalizedMessage()); // NOI18N
+            }
+        }
+    }
+}
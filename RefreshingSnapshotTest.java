@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshingSnapshotTest {
+
+    @Test
+    void aReloadStartsANewLoadAfterTheOneInFlight() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RefreshingSnapshot<Integer> snapshot = new RefreshingSnapshot<>("test", () -> { // NOI18N
+            loading.countDown();
+            await(release);
+            return loads.incrementAndGet();
+        }, new SimpleMeterRegistry());
+
+        CompletableFuture<Integer> scheduled = CompletableFuture.supplyAsync(snapshot::refresh);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> reload = CompletableFuture.supplyAsync(snapshot::reload);
+        release.countDown();
+
+        assertEquals(1, scheduled.get(5, TimeUnit.SECONDS).intValue());
+        assertEquals(2, reload.get(5, TimeUnit.SECONDS).intValue());
+        assertEquals(2, snapshot.getIfLoaded().intValue());
+    }
+
+    @Test
+    void aFailedRefreshKeepsTheCurrentSnapshot() {
+        AtomicInteger loads = new AtomicInteger();
+        RefreshingSnapshot<Integer> snapshot = new RefreshingSnapshot<>("test", () -> { // NOI18N
+            if (loads.incrementAndGet() > 1) {
+                throw new IllegalStateException("BPS unavailable"); // NOI18N
+            }
+            return 1;
+        }, new SimpleMeterRegistry());
+
+        assertEquals(1, snapshot.get().intValue());
+        try {
+            snapshot.refresh();
+        } catch (RuntimeException ex) {
+            // expected, the snapshot is kept
+        }
+        assertEquals(1, snapshot.get().intValue());
+    }
+
+    @Test
+    void aRetryRefreshesBeforeTheScheduledInterval() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch retried = new CountDownLatch(2);
+        RefreshingSnapshot<Integer> snapshot = new RefreshingSnapshot<>("test", () -> { // NOI18N
+            retried.countDown();
+            return loads.incrementAndGet();
+        }, new SimpleMeterRegistry());
+        snapshot.scheduleRefresh(Duration.ofHours(1));
+        try {
+            assertEquals(1, snapshot.get().intValue());
+            snapshot.refreshAfter(Duration.ofMillis(10));
+            // Only one retry is pending at a time
+            snapshot.refreshAfter(Duration.ofMillis(10));
+
+            assertTrue(retried.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(2, loads.get());
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Test
+    void returningTheCurrentSnapshotKeepsItWithoutNotifyingTheListeners() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Object value = new Object();
+        RefreshingSnapshot<Object> snapshot = new RefreshingSnapshot<>("test", () -> value, meterRegistry); // NOI18N
+        AtomicInteger notified = new AtomicInteger();
+        snapshot.addListener(loaded -> notified.incrementAndGet());
+
+        snapshot.get();
+        snapshot.refresh();
+
+        assertEquals(1, notified.get());
+        assertEquals(1.0, meterRegistry.counter("e1.RefreshingSnapshot.refreshes", "snapshot", "test", "result", "success").count()); // NOI18N
+        assertEquals(1.0, meterRegistry.counter("e1.RefreshingSnapshot.refreshes", "snapshot", "test", "result", "unchanged").count()); // NOI18N
+        assertEquals(0.0, meterRegistry.counter("e1.RefreshingSnapshot.refreshes", "snapshot", "test", "result", "failure").count()); // NOI18N
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
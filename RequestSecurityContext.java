@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.common.util.SecurityUtil;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The security details of the current user, resolved once per request and shared by the services handling it. The
+ * resolved values are kept as a request attribute, so a thread without a bound request (such as a pool thread running
+ * part of the request) resolves them again from {@link SecurityUtil}.
+ */
+@Component
+public class RequestSecurityContext {
+    private static final String ATTRIBUTE_NAME = RequestSecurityContext.class.getName() + ".resolved"; // NOI18N
+    private static final String EXTERNAL_USER_HEADER = "X-External-User"; // NOI18N
+
+    /**
+     * @return the id of the current user
+     */
+    public String getUserId() {
+        Resolved resolved = resolved();
+        if (resolved == null) {
+            return lookUpUserId();
+        }
+        synchronized (resolved) {
+            if (resolved.userId == null) {
+                resolved.userId = lookUpUserId();
+            }
+            return resolved.userId;
+        }
+    }
+
+    /**
+     * @param xExternalUser the external user the request is made on behalf of, can be empty
+     * @return the user id the BPS locks of the current user are held under
+     */
+    public String getLockUserId(String xExternalUser) {
+        // format the xExternalUser
+        if (ObjectUtils.isEmpty(xExternalUser)) {
+            return getUserId();
+        }
+        Resolved resolved = resolved();
+        if (resolved == null) {
+            return xExternalUser + '/' + lookUpUserId();
+        }
+        synchronized (resolved) {
+            return resolved.lockUserIds.computeIfAbsent(xExternalUser, externalUser -> externalUser + '/' + getUserId());
+        }
+    }
+
+    /**
+     * Identify what BPS may return to the current caller, for the reads and counts shared between callers. The key is
+     * the lock user id built from the X-External-User header of the request, followed by the permissions of the user.
+     *
+     * @return the key of the current caller
+     */
+    public String getCallerKey() {
+        Resolved resolved = resolved();
+        if (resolved == null) {
+            return callerKey(null);
+        }
+        synchronized (resolved) {
+            if (resolved.callerKey == null) {
+                resolved.callerKey = callerKey(externalUser());
+            }
+            return resolved.callerKey;
+        }
+    }
+
+    private String callerKey(String xExternalUser) {
+        StringBuilder key = new StringBuilder(getLockUserId(xExternalUser)).append('|');
+        for (SecurityUtil.Permission permission : SecurityUtil.Permission.values()) {
+            key.append(hasPermissions(permission) ? '1' : '0');
+        }
+        return key.toString();
+    }
+
+    private static String externalUser() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) requestAttributes).getRequest().getHeader(EXTERNAL_USER_HEADER) : null;
+    }
+
+    /**
+     * @param permission the permission to check
+     * @return true when the current user has the permission
+     */
+    public boolean hasPermissions(SecurityUtil.Permission permission) {
+        Resolved resolved = resolved();
+        if (resolved == null) {
+            return lookUpPermission(permission);
+        }
+        synchronized (resolved) {
+            return resolved.permissions.computeIfAbsent(permission, this::lookUpPermission);
+        }
+    }
+
+    String lookUpUserId() {
+        return SecurityUtil.getUserId();
+    }
+
+    boolean lookUpPermission(SecurityUtil.Permission permission) {
+        return SecurityUtil.hasPermissions(permission);
+    }
+
+    private static Resolved resolved() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        Resolved resolved = (Resolved) requestAttributes.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (resolved == null) {
+            resolved = new Resolved();
+            requestAttributes.setAttribute(ATTRIBUTE_NAME, resolved, RequestAttributes.SCOPE_REQUEST);
+        }
+        return resolved;
+    }
+
+    private static final class Resolved {
+        private String userId;
+        private String callerKey;
+        private final Map<String, String> lockUserIds = new HashMap<>();
+        private final Map<SecurityUtil.Permission, Boolean> permissions = new EnumMap<>(SecurityUtil.Permission.class);
+    }
+}
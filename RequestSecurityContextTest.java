@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.common.util.SecurityUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestSecurityContextTest {
+    private final AtomicInteger userIdLookUps = new AtomicInteger();
+    private final AtomicInteger permissionLookUps = new AtomicInteger();
+    private final RequestSecurityContext context = new RequestSecurityContext() {
+        @Override
+        String lookUpUserId() {
+            userIdLookUps.incrementAndGet();
+            return "user1"; // NOI18N
+        }
+
+        @Override
+        boolean lookUpPermission(SecurityUtil.Permission permission) {
+            permissionLookUps.incrementAndGet();
+            return true;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void theSecurityDetailsAreResolvedOncePerRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        assertEquals("user1", context.getUserId()); // NOI18N
+        assertEquals("user1", context.getUserId()); // NOI18N
+        assertEquals("user1", context.getLockUserId(null)); // NOI18N
+        assertEquals("ext/user1", context.getLockUserId("ext")); // NOI18N
+        assertTrue(context.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT));
+        assertTrue(context.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT));
+
+        assertEquals(1, userIdLookUps.get());
+        assertEquals(1, permissionLookUps.get());
+
+        // A new request resolves them again
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        context.getUserId();
+        assertEquals(2, userIdLookUps.get());
+    }
+
+    @Test
+    void theCallerKeyHasTheExternalUserAndThePermissionsOfTheRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-External-User", "ext"); // NOI18N
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        String callerKey = context.getCallerKey();
+
+        assertTrue(callerKey.startsWith("ext/user1|"), callerKey); // NOI18N
+        assertEquals(SecurityUtil.Permission.values().length, callerKey.length() - "ext/user1|".length()); // NOI18N
+        assertSame(callerKey, context.getCallerKey());
+        assertEquals(SecurityUtil.Permission.values().length, permissionLookUps.get());
+
+        // Another external user of the same user is another caller
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertNotEquals(callerKey, context.getCallerKey());
+    }
+
+    @Test
+    void aThreadWithoutARequestResolvesOnEveryCall() {
+        assertEquals("user1", context.getUserId()); // NOI18N
+        assertEquals("ext/user1", context.getLockUserId("ext")); // NOI18N
+        context.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT);
+        context.hasPermissions(SecurityUtil.Permission.VIEW_ATTACHMENT);
+
+        assertEquals(2, userIdLookUps.get());
+        assertEquals(2, permissionLookUps.get());
+    }
+}
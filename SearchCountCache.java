@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsTotalCountResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Short lived cache of the BPS total count of searches, keyed by the caller and the hash of the search (service id,
+ * format and criteria). BPS counts the cases the caller may see, so counts are only shared between requests with the
+ * same user, external user and permissions, unless configured to be shared across users for deployments where BPS
+ * returns the same data to every user.
+ * Concurrent requests for the count of the same search share a single BPS call.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchCountCache {
+    private static final String CACHE_NAME = "SearchCountCache"; // NOI18N
+    private static final String REQUESTS_METRIC_NAME = "e1.SearchCountCache.requests"; // NOI18N
+    private static final String STALENESS_METRIC_NAME = "e1.SearchCountCache.staleness"; // NOI18N
+    private static final String KEY_SEPARATOR = "|"; // NOI18N
+
+    private final MeterRegistry meterRegistry;
+    private final RequestSecurityContext requestSecurityContext;
+
+    @Value("${case-management.search-count-cache.ttl-millis:5000}")
+    private long ttlMillis;
+
+    @Value("${case-management.search-count-cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${case-management.search-count-cache.share-across-users:false}")
+    private boolean shareAcrossUsers;
+
+    private LocalCache<String, CachedCount> cache;
+
+    private final Map<String, CompletableFuture<BpsTotalCountResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        cache = new LocalCache<>(CACHE_NAME, maxSize, Duration.ofMillis(ttlMillis), meterRegistry);
+    }
+
+    /**
+     * Get the total count of a search from the cache, from the BPS call already counting the same search, or else
+     * from a new BPS call. Called on the request thread, the caller is resolved from the request.
+     *
+     * @param criteriaHash the hash of the search, see {@link SearchCursor#criteriaHash(String, String, Map)}
+     * @param loader       starts the BPS count call
+     * @return the future of the count response
+     */
+    public CompletableFuture<BpsTotalCountResponse> getTotalCount(String criteriaHash,
+                                                                  Supplier<CompletableFuture<BpsTotalCountResponse>> loader) {
+        String key = (shareAcrossUsers ? "" : requestSecurityContext.getCallerKey()) + KEY_SEPARATOR + criteriaHash;
+        CachedCount cachedCount = cache.getIfPresent(key);
+        if (cachedCount != null) {
+            meterRegistry.counter(REQUESTS_METRIC_NAME, "result", "hit").increment(); // NOI18N
+            meterRegistry.timer(STALENESS_METRIC_NAME).record(System.nanoTime() - cachedCount.loadedAtNanos, TimeUnit.NANOSECONDS);
+            return CompletableFuture.completedFuture(cachedCount.response);
+        }
+        boolean[] started = {false};
+        CompletableFuture<BpsTotalCountResponse> future = inFlight.computeIfAbsent(key, k -> {
+            started[0] = true;
+            return loader.get();
+        });
+        if (!started[0]) {
+            meterRegistry.counter(REQUESTS_METRIC_NAME, "result", "coalesced").increment(); // NOI18N
+            return future;
+        }
+        meterRegistry.counter(REQUESTS_METRIC_NAME, "result", "miss").increment(); // NOI18N
+        future.whenComplete((response, ex) -> {
+            if (ex == null) {
+                cache.put(key, new CachedCount(response));
+            }
+            inFlight.remove(key, future);
+        });
+        return future;
+    }
+
+    private static final class CachedCount {
+        private final BpsTotalCountResponse response;
+        private final long loadedAtNanos = System.nanoTime();
+
+        private CachedCount(BpsTotalCountResponse response) {
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.model.BpsTotalCountResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SearchCountCacheTest {
+    private static final String HASH = "hash"; // NOI18N
+
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private SearchCountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SearchCountCache(new SimpleMeterRegistry(), requestSecurityContext);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L); // NOI18N
+        ReflectionTestUtils.setField(cache, "maxSize", 100L); // NOI18N
+        cache.init();
+    }
+
+    @Test
+    void aCountIsOnlySharedBetweenRequestsOfTheSameCaller() {
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|11", "user1|11", "ext/user1|11"); // NOI18N
+
+        BpsTotalCountResponse first = cache.getTotalCount(HASH, this::load).join();
+        assertSame(first, cache.getTotalCount(HASH, this::load).join());
+        cache.getTotalCount(HASH, this::load).join();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void aCountIsSharedAcrossUsersWhenConfigured() {
+        ReflectionTestUtils.setField(cache, "shareAcrossUsers", true); // NOI18N
+
+        cache.getTotalCount(HASH, this::load).join();
+        cache.getTotalCount(HASH, this::load).join();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void concurrentRequestsOfTheSameCallerShareOneCall() {
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1|11"); // NOI18N
+        CompletableFuture<BpsTotalCountResponse> pending = new CompletableFuture<>();
+
+        CompletableFuture<BpsTotalCountResponse> first = cache.getTotalCount(HASH, () -> {
+            loads.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<BpsTotalCountResponse> second = cache.getTotalCount(HASH, this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    private CompletableFuture<BpsTotalCountResponse> load() {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture(mock(BpsTotalCountResponse.class));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.ChannelsUtil;
+import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * An opaque cursor to the next page of a multi-case search. The cursor carries the hash of the search it belongs to and
+ * the page it points to, so it cannot be applied to another search. The cursor is not signed, so it carries nothing the
+ * service trusts: the hash and page size must be those of the request, and the total count is not part of it. A page
+ * past the last one is just empty.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class SearchCursor {
+    /** Version 1 cursors also carried the total count, they are rejected. */
+    private static final String VERSION = "2"; // NOI18N
+    private static final String SEPARATOR = ":"; // NOI18N
+    private static final String CURSOR_FIELD_NAME = "cursor"; // NOI18N
+
+    private final String criteriaHash;
+    private final int page;
+    private final int pageSize;
+
+    /**
+     * @param criteriaHash the hash of the search, see {@link #criteriaHash(String, String, Map)}
+     * @param page         the page the cursor points to
+     * @param pageSize     the page size
+     * @return the cursor
+     */
+    static SearchCursor of(String criteriaHash, int page, int pageSize) {
+        return new SearchCursor(criteriaHash, page, pageSize);
+    }
+
+    /**
+     * @param encoded      the cursor sent by the client
+     * @param criteriaHash the hash of the search the client is running
+     * @param pageSize     the page size of the request
+     * @return the decoded cursor
+     * @throws ResourceBadRequestException if the cursor is malformed or belongs to another search or page size
+     */
+    static SearchCursor decode(String encoded, String criteriaHash, int pageSize) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            if (parts.length == 4 && VERSION.equals(parts[0]) && parts[1].equals(criteriaHash)
+                    && Integer.parseInt(parts[3]) == pageSize && pageSize > 0) {
+                int page = Integer.parseInt(parts[2]);
+                if (page >= 0) {
+                    return new SearchCursor(parts[1], page, pageSize);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // reported below, NumberFormatException is an IllegalArgumentException
+        }
+        throw new ResourceBadRequestException(ChannelsUtil.EXPECTED_PARAM_MISMATCH, CURSOR_FIELD_NAME, ChannelsUtil.EXPECTED_PARAM_MISMATCH);
+    }
+
+    /**
+     * @return the cursor to send to the client
+     */
+    String encode() {
+        String value = String.join(SEPARATOR, VERSION, criteriaHash, Integer.toString(page), Integer.toString(pageSize));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hash a search independently of the order of its criteria. The criteria are hashed in the unambiguous encoding of
+     * {@link CanonicalDigest}, so criteria only hash the same when they are equal.
+     *
+     * @param serviceId          the BPS service id
+     * @param format             the format of the search
+     * @param searchCriteriaData the search criteria, can be null
+     * @return the hash of the search
+     */
+    static String criteriaHash(String serviceId, String format, Map<String, Object> searchCriteriaData) {
+        return new CanonicalDigest().add(serviceId).add(format).add(searchCriteriaData).hex();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.exception.ResourceBadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCursorTest {
+    private static final String HASH = SearchCursor.criteriaHash("service", "flat", // NOI18N
+            Collections.singletonMap("status", "open")); // NOI18N
+
+    @Test
+    void aCursorDecodesToThePageItWasIssuedFor() {
+        SearchCursor cursor = SearchCursor.decode(SearchCursor.of(HASH, 3, 10).encode(), HASH, 10);
+
+        assertEquals(3, cursor.getPage());
+        assertEquals(10, cursor.getPageSize());
+    }
+
+    @Test
+    void aCursorOfAnotherSearchOrPageSizeIsRejected() {
+        String encoded = SearchCursor.of(HASH, 2, 10).encode();
+
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode(encoded, "other", 10)); // NOI18N
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode(encoded, HASH, 1000));
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode("not a cursor", HASH, 10)); // NOI18N
+    }
+
+    @Test
+    void aForgedPageOrACursorCarryingATotalCountIsRejected() {
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode(forge("2:" + HASH + ":-1:10"), HASH, 10)); // NOI18N
+        // A client supplied total count is never read back
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode(forge("1:" + HASH + ":2:10:25"), HASH, 10)); // NOI18N
+        assertThrows(ResourceBadRequestException.class, () -> SearchCursor.decode(forge("2:" + HASH + ":2:10:25"), HASH, 10)); // NOI18N
+        assertEquals(2, SearchCursor.decode(forge("2:" + HASH + ":2:10"), HASH, 10).getPage()); // NOI18N
+    }
+
+    @Test
+    void equalCriteriaHashTheSameWhateverTheirOrder() {
+        Map<String, Object> criteria = new LinkedHashMap<>();
+        criteria.put("a", 1); // NOI18N
+        criteria.put("b", 2); // NOI18N
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("b", 2); // NOI18N
+        reordered.put("a", 1); // NOI18N
+
+        assertEquals(SearchCursor.criteriaHash("service", "flat", criteria), // NOI18N
+                SearchCursor.criteriaHash("service", "flat", reordered)); // NOI18N
+    }
+
+    @Test
+    void criteriaOnlyHashTheSameWhenTheyAreEqual() {
+        Map<String, Object> split = new LinkedHashMap<>();
+        split.put("a", "1"); // NOI18N
+        split.put("b", "2"); // NOI18N
+
+        // Each pair was hashed from the same text
+        assertNotEquals(SearchCursor.criteriaHash("service", "flat", Collections.singletonMap("a", "1,b=2")), // NOI18N
+                SearchCursor.criteriaHash("service", "flat", split)); // NOI18N
+        assertNotEquals(SearchCursor.criteriaHash("service", "flat", Collections.singletonMap("a", null)), // NOI18N
+                SearchCursor.criteriaHash("service", "flat", Collections.singletonMap("a", "null"))); // NOI18N
+        assertNotEquals(SearchCursor.criteriaHash("service", "flat", Collections.singletonMap("a", 1)), // NOI18N
+                SearchCursor.criteriaHash("service", "flat", Collections.singletonMap("a", "1"))); // NOI18N
+        assertNotEquals(SearchCursor.criteriaHash("service|flat", "", null), // NOI18N
+                SearchCursor.criteriaHash("service", "flat|", null)); // NOI18N
+    }
+
+    private static String forge(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
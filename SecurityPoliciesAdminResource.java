@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.v0;
+
+import com.experian.eda.casemanagement.common.util.SecurityUtil;
+import com.experian.eda.casemanagement.exception.ResourcePermissionException;
+import com.experian.eda.casemanagement.service.SecurityPoliciesService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admin resource to force a refresh of the cached security policies, for when a policy change in BPS must be
+ * applied before the cached policies expire. Disabled unless both enabled and given a permission, and restricted to
+ * the users with that permission.
+ */
+@Component
+@RequiredArgsConstructor
+@Path("/v0/admin/security-policies/refresh")
+public class SecurityPoliciesAdminResource {
+    private final SecurityPoliciesService securityPoliciesService;
+
+    @Value("${case-management.security-policies.admin-refresh.enabled:false}")
+    private boolean enabled;
+
+    /** No default, no existing permission is meant for this refresh. */
+    @Value("${case-management.security-policies.admin-refresh.permission:}")
+    private SecurityUtil.Permission permission;
+
+    /**
+     * Reload the security policies from BPS.
+     *
+     * @return the status of the refresh with the hash of the reloaded policies, not the policies themselves
+     */
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response refresh() {
+        if (!enabled || permission == null) {
+            throw new NotFoundException();
+        }
+        if (!SecurityUtil.hasPermissions(permission)) {
+            throw new ResourcePermissionException("No permission to refresh security policies."); // NOI18N
+        }
+        Map<String, String> status = new LinkedHashMap<>();
+        status.put("status", "refreshed"); // NOI18N
+        status.put("hash", securityPoliciesService.refreshSecurityPolicies()); // NOI18N
+        return Response.ok(status).build();
+    }
+}
@@ -10,27 +10,135 @@ import com.experian.eda.casemanagement.channel.bps.v0.model.securitypolicy.BpsSe
 import com.experian.eda.casemanagement.generated.model.SecurityPoliciesResponse;
 import com.experian.eda.casemanagement.service.mapper.securitypolicies.SecurityPoliciesMapper;
 import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.CustomLog;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 
 /**
- * Service that will handle the logic of get security policies from BPS
+ * Service that will handle the logic of get security policies from BPS. BPS reads the policies with the credentials of
+ * the caller, so the policies are cached for each caller key. They are only mapped again when the BPS response changed.
+ * The mapped policies are cached as JSON, each call gets a copy of its own. They are not refreshed in the background,
+ * a background refresh has no caller to read them with; they expire after the TTL or on an admin refresh.
  */
+@CustomLog
 @Service
 @RequiredArgsConstructor
 public class SecurityPoliciesService {
 
     private final BpsClient bpsClient;
     private final SecurityPoliciesMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final RequestSecurityContext requestSecurityContext;
+
+    @Value("${case-management.security-policies.ttl-millis:60000}")
+    private long ttlMillis;
+
+    @Value("${case-management.security-policies.max-size:10000}")
+    private long maxSize;
+
+    private static final String SECURITY_POLICIES_CACHE_NAME = "SecurityPoliciesService.securityPolicies"; // NOI18N
+
+    /** The security policies BPS returned to each caller, by caller key. */
+    private LocalCache<String, MappedPolicies> securityPolicies;
+
+    /** The policies last mapped, with the hash of the BPS response they were mapped from, shared between callers. */
+    private volatile MappedPolicies lastMapped;
+
+    @PostConstruct
+    void init() {
+        securityPolicies = new LocalCache<>(SECURITY_POLICIES_CACHE_NAME, maxSize, Duration.ofMillis(ttlMillis), meterRegistry);
+    }
 
     /**
-     * Retrieve the security policies from BPS
+     * Retrieve the security policies from BPS, the policies of the current user are cached for the TTL
      *
-     * @return security policies response
+     * @return security policies response, a copy of its own for each call
      */
     public SecurityPoliciesResponse getSecurityPolicies() {
+        return read(getMappedPolicies());
+    }
+
+    /**
+     * Drop the cached security policies of every user and reload those of the current user from BPS now
+     *
+     * @return the hash of the BPS response the policies were reloaded from, null when it could not be hashed
+     */
+    public String refreshSecurityPolicies() {
+        LOGGER.info("Refreshing {}", SECURITY_POLICIES_CACHE_NAME); // NOI18N
+        securityPolicies.invalidateAll();
+        return getMappedPolicies().hash;
+    }
+
+    private MappedPolicies getMappedPolicies() {
+        String callerKey = requestSecurityContext.getCallerKey();
+        MappedPolicies current = securityPolicies.getIfPresent(callerKey);
+        if (current == null) {
+            current = loadSecurityPolicies();
+            securityPolicies.put(callerKey, current);
+        }
+        return current;
+    }
+
+    private MappedPolicies loadSecurityPolicies() {
         RestResponse<Response<BpsSecurityPolicyDto>> bpsResponse = bpsClient.getSecurityPolicies();
 
-        return mapper.toSecurityPoliciesResponse(bpsResponse.body());
+        String hash = hash(bpsResponse.body());
+        MappedPolicies mapped = lastMapped;
+        if (mapped != null && hash != null && hash.equals(mapped.hash)) {
+            return mapped;
+        }
+        mapped = new MappedPolicies(hash, write(mapper.toSecurityPoliciesResponse(bpsResponse.body())));
+        lastMapped = mapped;
+        return mapped;
+    }
+
+    private byte[] write(SecurityPoliciesResponse policies) {
+        try {
+            return objectMapper.writeValueAsBytes(policies);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize the security policies", ex); // NOI18N
+        }
+    }
+
+    private SecurityPoliciesResponse read(MappedPolicies mapped) {
+        try {
+            return objectMapper.readValue(mapped.json, SecurityPoliciesResponse.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private String hash(Response<BpsSecurityPolicyDto> body) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException ex) {
+            LOGGER.debug("Unable to hash the security policies, mapping them again", ex); // NOI18N
+            return null;
+        }
+    }
+
+    /**
+     * Security policies mapped from a BPS response, equal BPS responses map to equal policies whoever read them
+     */
+    private static final class MappedPolicies {
+        private final String hash;
+        /** The mapped policies as JSON, never modified. */
+        private final byte[] json;
+
+        private MappedPolicies(String hash, byte[] json) {
+            this.hash = hash;
+            this.json = json;
+        }
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.Response;
+import com.experian.eda.casemanagement.channel.bps.v0.model.securitypolicy.BpsSecurityPolicyDto;
+import com.experian.eda.casemanagement.generated.model.SecurityPoliciesResponse;
+import com.experian.eda.casemanagement.service.mapper.securitypolicies.SecurityPoliciesMapper;
+import com.experian.saas.service.wrapper.core.rest.RestResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SecurityPoliciesServiceTest {
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private SecurityPoliciesMapper mapper;
+    @Mock
+    private ObjectMapper objectMapper;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private SecurityPoliciesService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SecurityPoliciesService(bpsClient, mapper, new SimpleMeterRegistry(), objectMapper, requestSecurityContext);
+        ReflectionTestUtils.setField(service, "ttlMillis", 60_000L); // NOI18N
+        ReflectionTestUtils.setField(service, "maxSize", 100L); // NOI18N
+        service.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void policiesAreReadForEachUserAndOnlyMappedWhenTheyChanged() throws Exception {
+        Response<BpsSecurityPolicyDto> body = mock(Response.class);
+        RestResponse<Response<BpsSecurityPolicyDto>> bpsResponse = mock(RestResponse.class);
+        when(bpsResponse.body()).thenReturn(body);
+        when(bpsClient.getSecurityPolicies()).thenReturn(bpsResponse);
+        when(objectMapper.writeValueAsBytes(any())).thenReturn(new byte[] {1});
+        when(mapper.toSecurityPoliciesResponse(body)).thenReturn(new SecurityPoliciesResponse());
+        when(objectMapper.readValue(any(byte[].class), eq(SecurityPoliciesResponse.class)))
+                .thenAnswer(invocation -> new SecurityPoliciesResponse());
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1", "user1", "user2"); // NOI18N
+
+        SecurityPoliciesResponse first = service.getSecurityPolicies();
+        SecurityPoliciesResponse second = service.getSecurityPolicies();
+        SecurityPoliciesResponse third = service.getSecurityPolicies();
+
+        // A copy for each call, no caller can change the policies of another
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        verify(bpsClient, times(2)).getSecurityPolicies();
+        verify(mapper, times(1)).toSecurityPoliciesResponse(body);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aRefreshReadsThePoliciesAgainAndReturnsTheirHash() throws Exception {
+        Response<BpsSecurityPolicyDto> body = mock(Response.class);
+        RestResponse<Response<BpsSecurityPolicyDto>> bpsResponse = mock(RestResponse.class);
+        when(bpsResponse.body()).thenReturn(body);
+        when(bpsClient.getSecurityPolicies()).thenReturn(bpsResponse);
+        when(objectMapper.writeValueAsBytes(any())).thenReturn(new byte[] {1});
+        when(mapper.toSecurityPoliciesResponse(body)).thenReturn(new SecurityPoliciesResponse());
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1"); // NOI18N
+
+        service.getSecurityPolicies();
+        String hash = service.refreshSecurityPolicies();
+
+        assertEquals(DigestUtils.md5DigestAsHex(new byte[] {1}), hash);
+        verify(bpsClient, times(2)).getSecurityPolicies();
+    }
+}
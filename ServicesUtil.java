@@ -18,11 +18,6 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.validation.constraints.Size;
 import java.lang.reflect.Method;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -37,9 +32,7 @@ public class ServicesUtil {
     public static final int CONTENT_SIZE_MAX
             = getAnnotationSizeMax(CreatedCommentData.class, "getContent", CONTENT_SIZE_MAX_DEFAULT); // NOI18N
 
-    private String bpsStaticInternalDateFormat;
-
-    private DateTimeFormatter cmDateFormatter;
+    private CharacteristicValueConverters characteristicConverters;
 
     static int getAnnotationSizeMax(Class<?> clazz, String methodName, int defaultSize) {
         try {
@@ -68,35 +61,7 @@ public class ServicesUtil {
      * @return a {@link java.lang.Object} object
      */
     public Object toStrongTypedCharacteristics(Object value, String dataType) {
-        if (null == value) {
-            return null;
-        }
-
-        String stringValue = String.valueOf(value);
-
-        try {
-            switch (dataType) {
-                case "NumericInteger": // NOI18N
-                    return new BigInteger(stringValue);
-                case "Numeric": // NOI18N
-                case "BigDecimal": // NOI18N
-                    return new BigDecimal(stringValue);
-                case "Boolean": // NOI18N
-                    return Boolean.valueOf(stringValue);
-                case "Date": // NOI18N
-                    ZonedDateTime dateTime = ZonedDateTime.from(
-                            LocalDate.parse(stringValue, DateTimeFormatter.ofPattern(bpsStaticInternalDateFormat))
-                                    .atStartOfDay(ZoneId.of("Z"))); // NOI18N
-                    return cmDateFormatter.format(dateTime);
-                case "String": // NOI18N
-                case "Any": // NOI18N
-                default:
-                    return value;
-            }
-        } catch (Exception ex) {
-            LOGGER.warn("Unable to convert value [{}] to data type [{}] due to {}", value, dataType, ex.getLocalizedMessage(), ex); // NOI18N
-            return value;
-        }
+        return characteristicConverters.convert(value, dataType);
     }
 
     @Component
@@ -109,8 +74,8 @@ public class ServicesUtil {
 
         @PostConstruct
         private void init() {
-            ServicesUtil.bpsStaticInternalDateFormat = bpsInternalDateFormat;
-            ServicesUtil.cmDateFormatter = DateTimeFormatter.ofPattern(cmDateFormat);
+            ServicesUtil.characteristicConverters = new CharacteristicValueConverters(
+                    bpsInternalDateFormat, DateTimeFormatter.ofPattern(cmDateFormat));
         }
     }
 }
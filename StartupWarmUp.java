@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.CustomLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the data definitions with the internal token before the application reports ready. Valid values and security
+ * policies are read with the credentials of the caller, so they are not warmed up.
+ * Application runners complete before Spring Boot publishes the readiness to accept traffic, so the readiness probe
+ * only succeeds once the warm-up is over. Each load has its own timeout, a load that times out carries on in the
+ * background and is served once complete.
+ * <p>
+ * When enabled, each loaded snapshot is also persisted to disk and served at the next start until the first load
+ * completes, so a pod starts warm even when BPS is slow.
+ */
+@CustomLog
+@Component
+@RequiredArgsConstructor
+public class StartupWarmUp implements ApplicationRunner {
+    private static final String SNAPSHOT_SUFFIX = ".json"; // NOI18N
+    private static final CustomizableThreadFactory WARM_UP_THREAD_FACTORY = new CustomizableThreadFactory("warm-up-"); // NOI18N
+
+    private final DataDefinitionsService dataDefinitionsService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${case-management.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${case-management.warm-up.data-definitions-timeout-millis:30000}")
+    private long dataDefinitionsTimeoutMillis;
+
+    @Value("${case-management.warm-up.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${case-management.warm-up.snapshot.directory:${java.io.tmpdir}/case-management-snapshots}")
+    private String snapshotDirectoryName;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long startMillis = System.currentTimeMillis();
+        warmUp(dataDefinitionsService.getMergedDataDefinitionsSnapshot(),
+                DataDefinitionsService.MergedCharacteristicMetaData.class, dataDefinitionsTimeoutMillis);
+        LOGGER.info("Warm-up completed in {} ms", System.currentTimeMillis() - startMillis); // NOI18N
+    }
+
+    private <T> void warmUp(RefreshingSnapshot<T> snapshot, Class<T> type, long timeoutMillis) {
+        if (snapshotEnabled) {
+            restore(snapshot, type);
+            snapshot.addListener(value -> persist(snapshot, value));
+        }
+        // A thread of its own so the wait can time out, a load that times out carries on and the thread ends with it
+        CompletableFuture<T> load = CompletableFuture.supplyAsync(snapshot::refresh,
+                command -> WARM_UP_THREAD_FACTORY.newThread(command).start());
+        try {
+            load.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Warm-up of {} did not complete within {} ms, {}", snapshot.getName(), timeoutMillis, // NOI18N
+                    snapshot.getIfLoaded() != null ? "serving the persisted snapshot" : "it loads on first use"); // NOI18N
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.warn("Warm-up of {} failed due to {}", snapshot.getName(), ex.getCause().getLocalizedMessage()); // NOI18N
+        }
+    }
+
+    private Path snapshotFile(RefreshingSnapshot<?> snapshot) {
+        return Paths.get(snapshotDirectoryName).resolve(snapshot.getName() + SNAPSHOT_SUFFIX);
+    }
+
+    private <T> void restore(RefreshingSnapshot<T> snapshot, Class<T> type) {
+        Path file = snapshotFile(snapshot);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            if (snapshot.seed(objectMapper.readValue(in, type), Files.getLastModifiedTime(file).toMillis())) {
+                LOGGER.info("Serving {} from the snapshot persisted at {} until it is loaded", snapshot.getName(), file); // NOI18N
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Unable to read the persisted snapshot {} due to {}", file, ex.getLocalizedMessage()); // NOI18N
+        }
+    }
+
+    private void persist(RefreshingSnapshot<?> snapshot, Object value) {
+        Path file = snapshotFile(snapshot);
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temporaryFile = Files.createTempFile(file.getParent(), snapshot.getName(), ".tmp"); // NOI18N
+            try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+                objectMapper.writeValue(out, value);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Unable to persist the snapshot {} due to {}", file, ex.getLocalizedMessage()); // NOI18N
+            try {
+                if (temporaryFile != null) {
+                    Files.deleteIfExists(temporaryFile);
+                }
+            } catch (IOException deleteEx) {
+                LOGGER.debug("Unable to delete {}", temporaryFile, deleteEx); // NOI18N
+            }
+        }
+    }
+}
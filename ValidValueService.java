@@ -9,12 +9,28 @@ import com.experian.eda.casemanagement.channel.bps.v0.model.validvalue.ValidValu
 import com.experian.eda.casemanagement.exception.BpsValidationException;
 import com.experian.eda.casemanagement.generated.model.ValidValueResponse;
 import com.experian.eda.casemanagement.service.mapper.validvalues.ValidValuesMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
 import lombok.CustomLog;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
 
 /**
- * Service to handle valid values request to BPS.
+ * Service to handle valid values request to BPS. The valid values of each caller are cached for the TTL, serialized
+ * once, with an entity tag of their version.
+ * <p>
+ * No resource of this tree answers If-None-Match with a 304 yet: the valid values resource implements a generated
+ * interface, it has to call {@link #getTaggedValidValues()} and {@link TaggedValidValues#isNotModified(String)} once
+ * the interface takes the header. The valid values are not refreshed in the background, BPS reads them with the
+ * credentials of the caller and a background refresh has none.
  */
 @CustomLog
 @Service
@@ -23,13 +39,54 @@ public class ValidValueService {
 
     private final BpsClient bpsClient;
     private final ValidValuesMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final RequestSecurityContext requestSecurityContext;
+
+    @Value("${case-management.valid-values.ttl-millis:300000}")
+    private long ttlMillis;
+
+    @Value("${case-management.valid-values.max-size:10000}")
+    private long maxSize;
+
+    private static final String VALID_VALUES_CACHE_NAME = "ValidValueService.validValues"; // NOI18N
+
+    /** The valid values BPS returned to each caller, by caller key, BPS reads them with the credentials of the caller. */
+    private LocalCache<String, TaggedValidValues> validValues;
+
+    @PostConstruct
+    void init() {
+        validValues = new LocalCache<>(VALID_VALUES_CACHE_NAME, maxSize, Duration.ofMillis(ttlMillis), meterRegistry);
+    }
 
     /**
-     * Retrieve the valid value from BPS
+     * Retrieve the valid value from BPS, the valid values of the current user are cached for the TTL
      *
      * @return valid value response
      */
     public ValidValueResponse getValidValues() {
+        return getTaggedValidValues().getValidValues();
+    }
+
+    /**
+     * Retrieve the valid value with their serialized body and an entity tag that only changes when the valid values
+     * change, for a resource to answer a matching If-None-Match with a 304
+     *
+     * @return the valid values of the current user with their entity tag
+     */
+    public TaggedValidValues getTaggedValidValues() {
+        String callerKey = requestSecurityContext.getCallerKey();
+        TaggedValidValues current = validValues.getIfPresent(callerKey);
+        if (current == null) {
+            ValidValueResponse validValueResponse = loadValidValues();
+            byte[] body = serialize(validValueResponse);
+            current = new TaggedValidValues(validValueResponse, body, body == null ? null : eTagOf(body));
+            validValues.put(callerKey, current);
+        }
+        return current;
+    }
+
+    private ValidValueResponse loadValidValues() {
         ValidValueBpsResponse bpsResponse = bpsClient.getValidValues();
         if (bpsResponse == null) {
             throw new BpsValidationException(200, "BPS return null response"); // NOI18N
@@ -37,4 +94,45 @@ public class ValidValueService {
         return mapper.toValidValueResponse(bpsResponse);
     }
 
+    private byte[] serialize(ValidValueResponse validValueResponse) {
+        try {
+            return objectMapper.writeValueAsBytes(validValueResponse);
+        } catch (JsonProcessingException ex) {
+            LOGGER.debug("Unable to serialize the valid values, serving them without an entity tag", ex); // NOI18N
+            return null;
+        }
+    }
+
+    private static String eTagOf(byte[] body) {
+        return '"' + DigestUtils.md5DigestAsHex(body) + '"'; // NOI18N
+    }
+
+    /**
+     * Valid values with the entity tag of their version
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class TaggedValidValues {
+        private final ValidValueResponse validValues;
+        @Getter(AccessLevel.NONE)
+        private final byte[] body;
+        /** The entity tag, null when the valid values could not be serialized. */
+        private final String eTag;
+
+        /**
+         * @return the valid values serialized as JSON, a copy each call; null when they could not be serialized
+         */
+        public byte[] getBody() {
+            return body == null ? null : body.clone();
+        }
+
+        /**
+         * @param ifNoneMatch the value of the If-None-Match header, can be null
+         * @return true when the client already has these valid values
+         */
+        public boolean isNotModified(String ifNoneMatch) {
+            return eTag != null && DocumentContentDownload.matches(eTag, ifNoneMatch);
+        }
+    }
+
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Experian, 2022. All rights reserved.
+ */
+
+package com.experian.eda.casemanagement.service;
+
+import com.experian.eda.casemanagement.channel.bps.v0.BpsClient;
+import com.experian.eda.casemanagement.channel.bps.v0.model.validvalue.ValidValueBpsResponse;
+import com.experian.eda.casemanagement.generated.model.ValidValueResponse;
+import com.experian.eda.casemanagement.service.mapper.validvalues.ValidValuesMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ValidValueServiceTest {
+    @Mock
+    private BpsClient bpsClient;
+    @Mock
+    private ValidValuesMapper mapper;
+    @Mock
+    private RequestSecurityContext requestSecurityContext;
+
+    private ValidValueService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ValidValueService(bpsClient, mapper, new SimpleMeterRegistry(), new ObjectMapper(), requestSecurityContext);
+        ReflectionTestUtils.setField(service, "ttlMillis", 60_000L); // NOI18N
+        ReflectionTestUtils.setField(service, "maxSize", 100L); // NOI18N
+        service.init();
+    }
+
+    @Test
+    void validValuesAreCachedForTheUserBpsReturnedThemTo() {
+        ValidValueBpsResponse bpsResponse = mock(ValidValueBpsResponse.class);
+        ValidValueResponse validValues = new ValidValueResponse();
+        when(bpsClient.getValidValues()).thenReturn(bpsResponse);
+        when(mapper.toValidValueResponse(bpsResponse)).thenReturn(validValues);
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1", "user1", "user2"); // NOI18N
+
+        assertSame(validValues, service.getValidValues());
+        assertSame(validValues, service.getValidValues());
+        assertSame(validValues, service.getValidValues());
+
+        // Read once for each user, with the credentials of that user
+        verify(bpsClient, times(2)).getValidValues();
+    }
+
+    @Test
+    void theEntityTagOnlyMatchesTheValidValuesTheClientHas() throws JsonProcessingException {
+        ValidValueBpsResponse bpsResponse = mock(ValidValueBpsResponse.class);
+        when(bpsClient.getValidValues()).thenReturn(bpsResponse);
+        when(mapper.toValidValueResponse(bpsResponse)).thenReturn(new ValidValueResponse());
+        when(requestSecurityContext.getCallerKey()).thenReturn("user1", "user2"); // NOI18N
+
+        ValidValueService.TaggedValidValues first = service.getTaggedValidValues();
+        ValidValueService.TaggedValidValues second = service.getTaggedValidValues();
+
+        assertNotNull(first.getETag());
+        assertArrayEquals(new ObjectMapper().writeValueAsBytes(new ValidValueResponse()), first.getBody());
+        // Equal valid values read for different users have the same tag
+        assertEquals(first.getETag(), second.getETag());
+        assertTrue(second.isNotModified(first.getETag()));
+        assertFalse(second.isNotModified("\"other\"")); // NOI18N
+        assertFalse(second.isNotModified(null));
+    }
+}